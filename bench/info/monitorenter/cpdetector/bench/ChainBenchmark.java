@@ -0,0 +1,173 @@
+/*
+ * 
+ *  ChainBenchmark.java  cpdetector
+ *  benchmarks of detector chains behind the proxy.
+ *  Copyright (C) Achim Westermann, created on 17.10.2026, 10:31:05
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ * 
+ * The contents of this collection are subject to the Mozilla Public License Version 
+ * 1.1 (the "License"); you may not use this file except in compliance with 
+ * the License. You may obtain a copy of the License at 
+ * http://www.mozilla.org/MPL/
+ * 
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ * 
+ * The Original Code is the cpDetector code in [sub] packages info.monitorenter and 
+ * cpdetector. 
+ * 
+ * The Initial Developer of the Original Code is
+ * Achim Westermann <achim.westermann@gmx.de>.
+ * 
+ * Portions created by the Initial Developer are Copyright (c) 2007 
+ * the Initial Developer. All Rights Reserved.
+ * 
+ * Contributor(s):
+ * 
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ * 
+ * ***** END LICENSE BLOCK ***** * 
+ *  
+ * If you modify or optimize the code in a useful way please let me know.
+ * Achim.Westermann@gmx.de
+ */
+package info.monitorenter.cpdetector.bench;
+
+import info.monitorenter.cpdetector.io.CodepageDetectorProxy;
+import info.monitorenter.cpdetector.io.DetectionResult;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures typical chains configured in the {@link CodepageDetectorProxy}:
+ * On a whole in-memory document and on a file, where the sampling strategy
+ * of the chain decides how much is read.
+ * <p>
+ * 
+ * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ChainBenchmark {
+
+  /**
+   * The comma separated short names of the detectors in chain order, see
+   * {@link Detectors#chain(String)}: The chain of the
+   * {@link info.monitorenter.cpdetector.CodepageProcessor}, the one of the
+   * {@link info.monitorenter.cpdetector.CharsetPrinter} and a chain asking
+   * the cheap detectors first.
+   */
+  @Param( {"UTF8,Parsing,JChardet", "UTF8,Parsing,JChardet,ASCII",
+      "ByteOrderMark,ASCII,UTF8,Parsing,JChardet" })
+  public String chain;
+
+  /** The charset of the document. */
+  @Param( {"US-ASCII", "ISO-8859-1", "windows-1251", "Shift_JIS", "UTF-8" })
+  public String charset;
+
+  /** The size of the document in bytes. */
+  @Param( {"1024", "65536", "1048576", "104857600" })
+  public int size;
+
+  /** The proxy to measure. */
+  private CodepageDetectorProxy m_proxy;
+
+  /** The document to detect. */
+  private ByteBuffer m_document;
+
+  /** The document as a file. */
+  private Path m_file;
+
+  /**
+   * Configures the proxy and creates the document.
+   * <p>
+   * 
+   * @throws IOException
+   *           if the file cannot be written.
+   */
+  @Setup
+  public void setUp() throws IOException {
+    this.m_proxy = CodepageDetectorProxy.getInstance();
+    this.m_proxy.setChain(Detectors.chain(this.chain));
+    byte[] document = Documents.html(this.charset, this.size);
+    this.m_document = ByteBuffer.wrap(document);
+    this.m_file = Files.createTempFile("cpdetector-bench", ".html");
+    Files.write(this.m_file, document);
+  }
+
+  /**
+   * Deletes the file.
+   * <p>
+   * 
+   * @throws IOException
+   *           if the file cannot be deleted.
+   */
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(this.m_file);
+  }
+
+  /**
+   * Detects the whole in-memory document.
+   * <p>
+   * 
+   * @return the result.
+   * 
+   * @throws IOException
+   *           if a detector fails.
+   */
+  @Benchmark
+  public DetectionResult detectBuffer() throws IOException {
+    return this.m_proxy.detect(this.m_document.duplicate());
+  }
+
+  /**
+   * Detects the file.
+   * <p>
+   * 
+   * @return the result.
+   * 
+   * @throws IOException
+   *           if the file cannot be read or a detector fails.
+   */
+  @Benchmark
+  public Charset detectFile() throws IOException {
+    return this.m_proxy.detectCodepage(this.m_file);
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * 
+ *  DetectorBenchmark.java  cpdetector
+ *  benchmarks of the single detectors.
+ *  Copyright (C) Achim Westermann, created on 17.10.2026, 10:31:05
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ * 
+ * The contents of this collection are subject to the Mozilla Public License Version 
+ * 1.1 (the "License"); you may not use this file except in compliance with 
+ * the License. You may obtain a copy of the License at 
+ * http://www.mozilla.org/MPL/
+ * 
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ * 
+ * The Original Code is the cpDetector code in [sub] packages info.monitorenter and 
+ * cpdetector. 
+ * 
+ * The Initial Developer of the Original Code is
+ * Achim Westermann <achim.westermann@gmx.de>.
+ * 
+ * Portions created by the Initial Developer are Copyright (c) 2007 
+ * the Initial Developer. All Rights Reserved.
+ * 
+ * Contributor(s):
+ * 
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ * 
+ * ***** END LICENSE BLOCK ***** * 
+ *  
+ * If you modify or optimize the code in a useful way please let me know.
+ * Achim.Westermann@gmx.de
+ */
+package info.monitorenter.cpdetector.bench;
+
+import info.monitorenter.cpdetector.io.DetectionResult;
+import info.monitorenter.cpdetector.io.ICodepageDetector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures every detector in isolation on a whole in-memory HTML document
+ * ({@link ICodepageDetector#detect(ByteBuffer)} takes the buffer as given, no
+ * sampling).
+ * <p>
+ * Run with <code>-prof gc</code> (the default of the ant target
+ * <code>bench</code>) to see the allocation rate next to the throughput.
+ * <p>
+ * 
+ * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DetectorBenchmark {
+
+  /** The short name of the detector, see {@link Detectors#create(String)}. */
+  @Param( {"ByteOrderMark", "ASCII", "Unicode", "UTF8", "Parsing", "JChardet" })
+  public String detector;
+
+  /** The charset of the document. */
+  @Param( {"US-ASCII", "ISO-8859-1", "windows-1251", "Shift_JIS", "GB2312", "UTF-8", "UTF-16LE" })
+  public String charset;
+
+  /** The size of the document in bytes. */
+  @Param( {"1024", "65536", "1048576", "104857600" })
+  public int size;
+
+  /** The detector to measure. */
+  private ICodepageDetector m_detector;
+
+  /** The document to detect. */
+  private ByteBuffer m_document;
+
+  /**
+   * Creates the detector and the document.
+   */
+  @Setup
+  public void setUp() {
+    this.m_detector = Detectors.create(this.detector);
+    this.m_document = ByteBuffer.wrap(Documents.html(this.charset, this.size));
+  }
+
+  /**
+   * Detects the whole document.
+   * <p>
+   * 
+   * @return the result.
+   * 
+   * @throws IOException
+   *           if the detector fails.
+   */
+  @Benchmark
+  public DetectionResult detect() throws IOException {
+    return this.m_detector.detect(this.m_document.duplicate());
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * 
+ *  Detectors.java  cpdetector
+ *  the detectors the benchmarks are run for.
+ *  Copyright (C) Achim Westermann, created on 17.10.2026, 10:31:05
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ * 
+ * The contents of this collection are subject to the Mozilla Public License Version 
+ * 1.1 (the "License"); you may not use this file except in compliance with 
+ * the License. You may obtain a copy of the License at 
+ * http://www.mozilla.org/MPL/
+ * 
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ * 
+ * The Original Code is the cpDetector code in [sub] packages info.monitorenter and 
+ * cpdetector. 
+ * 
+ * The Initial Developer of the Original Code is
+ * Achim Westermann <achim.westermann@gmx.de>.
+ * 
+ * Portions created by the Initial Developer are Copyright (c) 2007 
+ * the Initial Developer. All Rights Reserved.
+ * 
+ * Contributor(s):
+ * 
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ * 
+ * ***** END LICENSE BLOCK ***** * 
+ *  
+ * If you modify or optimize the code in a useful way please let me know.
+ * Achim.Westermann@gmx.de
+ */
+package info.monitorenter.cpdetector.bench;
+
+import info.monitorenter.cpdetector.io.ASCIIDetector;
+import info.monitorenter.cpdetector.io.ByteOrderMarkDetector;
+import info.monitorenter.cpdetector.io.CodepageDetectorChain;
+import info.monitorenter.cpdetector.io.ICodepageDetector;
+import info.monitorenter.cpdetector.io.JChardetFacade;
+import info.monitorenter.cpdetector.io.ParsingDetector;
+import info.monitorenter.cpdetector.io.UTF8Detector;
+import info.monitorenter.cpdetector.io.UnicodeDetector;
+
+import java.util.StringTokenizer;
+
+/**
+ * Creates the detectors the benchmarks are parameterized with by short names.
+ * <p>
+ * 
+ * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+ */
+public final class Detectors {
+
+  /** Utility class. */
+  private Detectors() {
+    // nop
+  }
+
+  /**
+   * Returns the detector of the given short name: One of
+   * <code>ByteOrderMark</code>, <code>ASCII</code>, <code>Unicode</code>,
+   * <code>UTF8</code>, <code>Parsing</code> and <code>JChardet</code>.
+   * <p>
+   * 
+   * @param name
+   *          the short name of the detector.
+   * 
+   * @return the detector.
+   * 
+   * @throws IllegalArgumentException
+   *           if the name is unknown.
+   */
+  public static ICodepageDetector create(final String name) throws IllegalArgumentException {
+    ICodepageDetector ret;
+    if ("ByteOrderMark".equals(name)) {
+      ret = new ByteOrderMarkDetector();
+    } else if ("ASCII".equals(name)) {
+      ret = ASCIIDetector.getInstance();
+    } else if ("Unicode".equals(name)) {
+      ret = UnicodeDetector.getInstance();
+    } else if ("UTF8".equals(name)) {
+      ret = UTF8Detector.getInstance();
+    } else if ("Parsing".equals(name)) {
+      ret = new ParsingDetector(false);
+    } else if ("JChardet".equals(name)) {
+      ret = JChardetFacade.getInstance();
+    } else {
+      throw new IllegalArgumentException("Unknown detector " + name + ".");
+    }
+    return ret;
+  }
+
+  /**
+   * Returns a chain of the detectors of the given comma separated short names
+   * in the given order.
+   * <p>
+   * 
+   * @param names
+   *          comma separated short names of detectors, see
+   *          {@link #create(String)}.
+   * 
+   * @return the chain.
+   * 
+   * @throws IllegalArgumentException
+   *           if a name is unknown.
+   */
+  public static CodepageDetectorChain chain(final String names) throws IllegalArgumentException {
+    CodepageDetectorChain.Builder ret = CodepageDetectorChain.builder();
+    StringTokenizer tokens = new StringTokenizer(names, ",");
+    while (tokens.hasMoreTokens()) {
+      ret.add(Detectors.create(tokens.nextToken().trim()));
+    }
+    return ret.build();
+  }
+}
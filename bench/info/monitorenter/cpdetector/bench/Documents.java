@@ -0,0 +1,210 @@
+/*
+ * 
+ *  Documents.java  cpdetector
+ *  synthetic documents for the benchmarks.
+ *  Copyright (C) Achim Westermann, created on 17.10.2026, 10:12:40
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ * 
+ * The contents of this collection are subject to the Mozilla Public License Version 
+ * 1.1 (the "License"); you may not use this file except in compliance with 
+ * the License. You may obtain a copy of the License at 
+ * http://www.mozilla.org/MPL/
+ * 
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ * 
+ * The Original Code is the cpDetector code in [sub] packages info.monitorenter and 
+ * cpdetector. 
+ * 
+ * The Initial Developer of the Original Code is
+ * Achim Westermann <achim.westermann@gmx.de>.
+ * 
+ * Portions created by the Initial Developer are Copyright (c) 2007 
+ * the Initial Developer. All Rights Reserved.
+ * 
+ * Contributor(s):
+ * 
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ * 
+ * ***** END LICENSE BLOCK ***** * 
+ *  
+ * If you modify or optimize the code in a useful way please let me know.
+ * Achim.Westermann@gmx.de
+ */
+package info.monitorenter.cpdetector.bench;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Generates the synthetic documents the benchmarks detect: Sentences typical
+ * for a charset (mixed with ASCII markup and digits like real documents)
+ * repeated up to an exact size.
+ * <p>
+ * Only whole sentences are repeated and the rest is padded with spaces, so
+ * no document ends in a truncated multibyte sequence.
+ * <p>
+ * 
+ * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+ */
+public final class Documents {
+
+  /** The ASCII part of every sentence. */
+  private static final String ASCII = "The quick brown fox jumps over the lazy dog 0123456789. ";
+
+  /** Western european text. */
+  private static final String LATIN = "Gr\u00f6\u00dfere \u00c4nderungen f\u00fcr na\u00efve Caf\u00e9s \u00e0 la carte, s'il vous pla\u00eet. ";
+
+  /** Cyrillic text. */
+  private static final String CYRILLIC = "\u0421\u044a\u0435\u0448\u044c \u0436\u0435 \u0435\u0449\u0451 \u044d\u0442\u0438\u0445 \u043c\u044f\u0433\u043a\u0438\u0445 \u0444\u0440\u0430\u043d\u0446\u0443\u0437\u0441\u043a\u0438\u0445 \u0431\u0443\u043b\u043e\u043a, \u0434\u0430 \u0432\u044b\u043f\u0435\u0439 \u0447\u0430\u044e. ";
+
+  /** Japanese text. */
+  private static final String JAPANESE = "\u3044\u308d\u306f\u306b\u307b\u3078\u3068 \u3061\u308a\u306c\u308b\u3092 \u65e5\u672c\u8a9e\u306e\u6587\u7ae0\u3067\u3059\u3002";
+
+  /** Simplified chinese text. */
+  private static final String CHINESE = "\u6211\u80fd\u541e\u4e0b\u73bb\u7483\u800c\u4e0d\u4f24\u8eab\u4f53\u3002\u4e2d\u6587\u6587\u672c\u3002";
+
+  /** The approximate amount of bytes of the repeated unit. */
+  private static final int UNIT = 4096;
+
+  /** Utility class. */
+  private Documents() {
+    // nop
+  }
+
+  /**
+   * Returns the sentence typical for the given charset.
+   * <p>
+   * 
+   * @param charset
+   *          the charset to write the document in.
+   * 
+   * @return a sentence all characters of which are mappable to the charset.
+   */
+  private static String sentence(final Charset charset) {
+    String name = charset.name();
+    String ret;
+    if ("US-ASCII".equals(name)) {
+      ret = ASCII;
+    } else if (name.startsWith("ISO-8859-1") || name.equals("windows-1252")) {
+      ret = ASCII + LATIN;
+    } else if (name.equals("windows-1251") || name.equals("KOI8-R") || name.equals("ISO-8859-5")) {
+      ret = ASCII + CYRILLIC;
+    } else if (name.equals("Shift_JIS") || name.equals("EUC-JP") || name.equals("ISO-2022-JP")) {
+      ret = ASCII + JAPANESE;
+    } else if (name.equals("GB2312") || name.equals("GBK") || name.equals("GB18030")) {
+      ret = ASCII + CHINESE;
+    } else {
+      // Unicode:
+      ret = ASCII + LATIN + CYRILLIC + JAPANESE + CHINESE;
+    }
+    return ret;
+  }
+
+  /**
+   * Returns the HTML head declaring the given charset in a meta tag.
+   * <p>
+   * 
+   * @param charset
+   *          the declared charset.
+   * 
+   * @return the HTML head declaring the given charset.
+   */
+  public static String meta(final Charset charset) {
+    return "<html><head><meta http-equiv=\"Content-Type\" content=\"text/html; charset=" + charset.name()
+        + "\"><title>cpdetector benchmark</title></head><body>";
+  }
+
+  /**
+   * Returns a plain text document.
+   * <p>
+   * 
+   * @param charset
+   *          the name of the charset to write the document in.
+   * 
+   * @param size
+   *          the exact size of the document in bytes.
+   * 
+   * @return the document.
+   */
+  public static byte[] text(final String charset, final int size) {
+    return Documents.create(Charset.forName(charset), "", "", size);
+  }
+
+  /**
+   * Returns a HTML document declaring its charset in the head.
+   * <p>
+   * 
+   * @param charset
+   *          the name of the charset to write the document in.
+   * 
+   * @param size
+   *          the exact size of the document in bytes.
+   * 
+   * @return the document.
+   */
+  public static byte[] html(final String charset, final int size) {
+    Charset cs = Charset.forName(charset);
+    return Documents.create(cs, Documents.meta(cs), "", size);
+  }
+
+  /**
+   * Returns a document that starts with the given head, ends with the given
+   * tail and is filled with sentences typical for the charset in between.
+   * <p>
+   * 
+   * @param charset
+   *          the charset to write the document in.
+   * 
+   * @param head
+   *          the text at the start of the document.
+   * 
+   * @param tail
+   *          the text at the end of the document.
+   * 
+   * @param size
+   *          the exact size of the document in bytes, the head and the tail
+   *          are cut if they do not fit.
+   * 
+   * @return the document.
+   */
+  public static byte[] create(final Charset charset, final String head, final String tail, final int size) {
+    byte[] ret = new byte[size];
+    ByteBuffer out = ByteBuffer.wrap(ret);
+    byte[] first = head.getBytes(charset);
+    byte[] last = tail.getBytes(charset);
+    out.put(first, 0, Math.min(first.length, size));
+    out.limit(Math.max(out.position(), size - last.length));
+    String sentence = Documents.sentence(charset);
+    StringBuilder text = new StringBuilder(UNIT);
+    while (text.length() < UNIT / 2) {
+      text.append(sentence);
+    }
+    byte[] unit = text.toString().getBytes(charset);
+    while (out.remaining() >= unit.length) {
+      out.put(unit);
+    }
+    byte[] space = " ".getBytes(charset);
+    while (out.remaining() >= space.length) {
+      out.put(space);
+    }
+    out.limit(size);
+    out.position(Math.max(out.position(), size - last.length));
+    out.put(last, 0, Math.min(last.length, out.remaining()));
+    return ret;
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * 
+ *  ParserBenchmark.java  cpdetector
+ *  the charset declaration scanner versus the ANTLR parser.
+ *  Copyright (C) Achim Westermann, created on 17.10.2026, 10:31:05
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ * 
+ * The contents of this collection are subject to the Mozilla Public License Version 
+ * 1.1 (the "License"); you may not use this file except in compliance with 
+ * the License. You may obtain a copy of the License at 
+ * http://www.mozilla.org/MPL/
+ * 
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ * 
+ * The Original Code is the cpDetector code in [sub] packages info.monitorenter and 
+ * cpdetector. 
+ * 
+ * The Initial Developer of the Original Code is
+ * Achim Westermann <achim.westermann@gmx.de>.
+ * 
+ * Portions created by the Initial Developer are Copyright (c) 2007 
+ * the Initial Developer. All Rights Reserved.
+ * 
+ * Contributor(s):
+ * 
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ * 
+ * ***** END LICENSE BLOCK ***** * 
+ *  
+ * If you modify or optimize the code in a useful way please let me know.
+ * Achim.Westermann@gmx.de
+ */
+package info.monitorenter.cpdetector.bench;
+
+import info.monitorenter.cpdetector.io.parser.EncodingLexer;
+import info.monitorenter.cpdetector.io.parser.EncodingParser;
+import info.monitorenter.cpdetector.io.parser.EncodingScanner;
+import info.monitorenter.io.ByteBufferInputStream;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import antlr.ANTLRException;
+
+/**
+ * Compares the byte-level {@link EncodingScanner} the
+ * {@link info.monitorenter.cpdetector.io.ParsingDetector} uses with the
+ * ANTLR-generated {@link EncodingLexer} / {@link EncodingParser} it used
+ * before, on documents with the declaration at the head, at the tail and
+ * without one.
+ * <p>
+ * The sizes stop at 1 MB as the ANTLR path is too slow for larger documents.
+ * <p>
+ * 
+ * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ParserBenchmark {
+
+  /** Where the document declares its charset: head, tail or none. */
+  @Param( {"head", "tail", "none" })
+  public String declaration;
+
+  /** The charset of the document. */
+  @Param( {"ISO-8859-1", "UTF-8" })
+  public String charset;
+
+  /** The size of the document in bytes. */
+  @Param( {"1024", "8192", "65536", "1048576" })
+  public int size;
+
+  /** The document. */
+  private ByteBuffer m_document;
+
+  /**
+   * Creates the document.
+   */
+  @Setup
+  public void setUp() {
+    Charset cs = Charset.forName(this.charset);
+    String meta = Documents.meta(cs);
+    String head = "head".equals(this.declaration) ? meta : "";
+    String tail = "tail".equals(this.declaration) ? meta : "";
+    this.m_document = ByteBuffer.wrap(Documents.create(cs, head, tail, this.size));
+  }
+
+  /**
+   * Scans the document with the byte-level scanner.
+   * <p>
+   * 
+   * @return the declared charset name or null.
+   */
+  @Benchmark
+  public String scanner() {
+    return EncodingScanner.scan(this.m_document.duplicate());
+  }
+
+  /**
+   * Parses the document with the ANTLR lexer and parser the way the
+   * {@link info.monitorenter.cpdetector.io.ParsingDetector} did before the
+   * scanner.
+   * <p>
+   * 
+   * @return the declared charset name or null.
+   * 
+   * @throws IOException
+   *           never.
+   */
+  @Benchmark
+  public String antlr() throws IOException {
+    String ret;
+    EncodingLexer lexer = new EncodingLexer(new InputStreamReader(new ByteBufferInputStream(this.m_document
+        .duplicate()), "US-ASCII"));
+    try {
+      ret = new EncodingParser(lexer).htmlDocument();
+    } catch (ANTLRException e) {
+      ret = null;
+    }
+    return ret;
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * 
+ *  StreamBenchmark.java  cpdetector
+ *  benchmarks of the ASCII check and the limited stream.
+ *  Copyright (C) Achim Westermann, created on 17.10.2026, 10:31:05
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ * 
+ * The contents of this collection are subject to the Mozilla Public License Version 
+ * 1.1 (the "License"); you may not use this file except in compliance with 
+ * the License. You may obtain a copy of the License at 
+ * http://www.mozilla.org/MPL/
+ * 
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ * 
+ * The Original Code is the cpDetector code in [sub] packages info.monitorenter and 
+ * cpdetector. 
+ * 
+ * The Initial Developer of the Original Code is
+ * Achim Westermann <achim.westermann@gmx.de>.
+ * 
+ * Portions created by the Initial Developer are Copyright (c) 2007 
+ * the Initial Developer. All Rights Reserved.
+ * 
+ * Contributor(s):
+ * 
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ * 
+ * ***** END LICENSE BLOCK ***** * 
+ *  
+ * If you modify or optimize the code in a useful way please let me know.
+ * Achim.Westermann@gmx.de
+ */
+package info.monitorenter.cpdetector.bench;
+
+import info.monitorenter.io.LimitedInputStream;
+import info.monitorenter.util.FileUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link FileUtil#isAllASCII(ByteBuffer)},
+ * {@link FileUtil#isAllASCII(InputStream, int)} and reading through a
+ * {@link LimitedInputStream} compared to reading the plain stream.
+ * <p>
+ * Only ASCII documents are scanned completely by the ASCII check: For the
+ * others it measures how fast the first non-ASCII byte is found.
+ * <p>
+ * 
+ * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class StreamBenchmark {
+
+  /** The charset of the document. */
+  @Param( {"US-ASCII", "ISO-8859-1", "UTF-8" })
+  public String charset;
+
+  /** The size of the document in bytes. */
+  @Param( {"1024", "65536", "1048576", "104857600" })
+  public int size;
+
+  /** The document. */
+  private byte[] m_document;
+
+  /** The read buffer of the stream benchmarks. */
+  private final byte[] m_buffer = new byte[8192];
+
+  /**
+   * Creates the document.
+   */
+  @Setup
+  public void setUp() {
+    this.m_document = Documents.text(this.charset, this.size);
+  }
+
+  /**
+   * Checks the document in memory.
+   * <p>
+   * 
+   * @return true if the document is ASCII.
+   */
+  @Benchmark
+  public boolean isAllASCIIBuffer() {
+    return FileUtil.isAllASCII(ByteBuffer.wrap(this.m_document));
+  }
+
+  /**
+   * Checks the document from a stream.
+   * <p>
+   * 
+   * @return true if the document is ASCII.
+   * 
+   * @throws IOException
+   *           never.
+   */
+  @Benchmark
+  public boolean isAllASCIIStream() throws IOException {
+    return FileUtil.isAllASCII(new ByteArrayInputStream(this.m_document), this.size);
+  }
+
+  /**
+   * Reads the document from a plain stream: The baseline of
+   * {@link #readLimited()}.
+   * <p>
+   * 
+   * @return the amount of bytes read.
+   * 
+   * @throws IOException
+   *           never.
+   */
+  @Benchmark
+  public long readPlain() throws IOException {
+    return this.drain(new ByteArrayInputStream(this.m_document));
+  }
+
+  /**
+   * Reads the first half of the document through a limited stream.
+   * <p>
+   * 
+   * @return the amount of bytes read.
+   * 
+   * @throws IOException
+   *           never.
+   */
+  @Benchmark
+  public long readLimited() throws IOException {
+    return this.drain(new LimitedInputStream(new ByteArrayInputStream(this.m_document), this.size / 2));
+  }
+
+  /**
+   * Reads the given stream to its end.
+   * <p>
+   * 
+   * @param in
+   *          the stream to read.
+   * 
+   * @return the amount of bytes read.
+   * 
+   * @throws IOException
+   *           never.
+   */
+  private long drain(final InputStream in) throws IOException {
+    long ret = 0;
+    int read;
+    while ((read = in.read(this.m_buffer, 0, this.m_buffer.length)) != -1) {
+      ret += read;
+    }
+    return ret;
+  }
+}
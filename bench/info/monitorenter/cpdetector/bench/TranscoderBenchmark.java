@@ -0,0 +1,217 @@
+/*
+ * 
+ *  TranscoderBenchmark.java  cpdetector
+ *  benchmarks of the transcoding of the processor.
+ *  Copyright (C) Achim Westermann, created on 17.10.2026, 10:31:05
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ * 
+ * The contents of this collection are subject to the Mozilla Public License Version 
+ * 1.1 (the "License"); you may not use this file except in compliance with 
+ * the License. You may obtain a copy of the License at 
+ * http://www.mozilla.org/MPL/
+ * 
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ * 
+ * The Original Code is the cpDetector code in [sub] packages info.monitorenter and 
+ * cpdetector. 
+ * 
+ * The Initial Developer of the Original Code is
+ * Achim Westermann <achim.westermann@gmx.de>.
+ * 
+ * Portions created by the Initial Developer are Copyright (c) 2007 
+ * the Initial Developer. All Rights Reserved.
+ * 
+ * Contributor(s):
+ * 
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ * 
+ * ***** END LICENSE BLOCK ***** * 
+ *  
+ * If you modify or optimize the code in a useful way please let me know.
+ * Achim.Westermann@gmx.de
+ */
+package info.monitorenter.cpdetector.bench;
+
+import info.monitorenter.cpdetector.io.Transcoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the transcoding loop of the
+ * {@link info.monitorenter.cpdetector.CodepageProcessor} (the
+ * {@link Transcoder}): From an in-memory document into a channel that
+ * discards the output and from file to file.
+ * <p>
+ * 
+ * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TranscoderBenchmark {
+
+  /** The charset of the document. */
+  @Param( {"US-ASCII", "ISO-8859-1", "windows-1251", "Shift_JIS", "UTF-16LE", "UTF-8" })
+  public String charset;
+
+  /** The charset to transcode to. */
+  @Param( {"UTF-8" })
+  public String target;
+
+  /** The size of the document in bytes. */
+  @Param( {"1024", "65536", "1048576", "104857600" })
+  public int size;
+
+  /** The transcoder to measure. */
+  private final Transcoder m_transcoder = new Transcoder();
+
+  /** The charset of the document. */
+  private Charset m_source;
+
+  /** The charset to transcode to. */
+  private Charset m_target;
+
+  /** The document. */
+  private ByteBuffer m_document;
+
+  /** The document as a file. */
+  private Path m_from;
+
+  /** The transcoded file. */
+  private Path m_to;
+
+  /** Discards the transcoded bytes. */
+  private final Sink m_sink = new Sink();
+
+  /**
+   * Creates the document and its file.
+   * <p>
+   * 
+   * @throws IOException
+   *           if the file cannot be written.
+   */
+  @Setup
+  public void setUp() throws IOException {
+    this.m_source = Charset.forName(this.charset);
+    this.m_target = Charset.forName(this.target);
+    byte[] document = Documents.text(this.charset, this.size);
+    this.m_document = ByteBuffer.wrap(document);
+    this.m_from = Files.createTempFile("cpdetector-bench", ".txt");
+    this.m_to = Files.createTempFile("cpdetector-bench", ".txt");
+    Files.write(this.m_from, document);
+  }
+
+  /**
+   * Deletes the files.
+   * <p>
+   * 
+   * @throws IOException
+   *           if a file cannot be deleted.
+   */
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(this.m_from);
+    Files.deleteIfExists(this.m_to);
+  }
+
+  /**
+   * Transcodes the in-memory document.
+   * <p>
+   * 
+   * @return the amount of bytes written.
+   * 
+   * @throws IOException
+   *           never.
+   */
+  @Benchmark
+  public long transcodeBuffer() throws IOException {
+    this.m_sink.m_written = 0;
+    this.m_transcoder.transcode(this.m_document.duplicate(), this.m_source, this.m_sink, this.m_target);
+    return this.m_sink.m_written;
+  }
+
+  /**
+   * Transcodes the file.
+   * <p>
+   * 
+   * @throws IOException
+   *           if a file cannot be read or written.
+   */
+  @Benchmark
+  public void transcodeFile() throws IOException {
+    this.m_transcoder.transcode(this.m_from, this.m_source, this.m_to, this.m_target);
+  }
+
+  /**
+   * A channel that counts and discards the bytes written.
+   * <p>
+   * 
+   * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+   */
+  private static final class Sink implements WritableByteChannel {
+
+    /** The amount of bytes written. */
+    long m_written;
+
+    /**
+     * @see java.nio.channels.WritableByteChannel#write(java.nio.ByteBuffer)
+     */
+    public int write(final ByteBuffer src) {
+      int ret = src.remaining();
+      src.position(src.limit());
+      this.m_written += ret;
+      return ret;
+    }
+
+    /**
+     * @see java.nio.channels.Channel#isOpen()
+     */
+    public boolean isOpen() {
+      return true;
+    }
+
+    /**
+     * @see java.nio.channels.Channel#close()
+     */
+    public void close() {
+      // nop
+    }
+  }
+}
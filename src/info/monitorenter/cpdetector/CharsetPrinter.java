@@ -43,34 +43,73 @@
 package info.monitorenter.cpdetector;
 
 import info.monitorenter.cpdetector.io.ASCIIDetector;
-import info.monitorenter.cpdetector.io.CodepageDetectorProxy;
+import info.monitorenter.cpdetector.io.AbstractCodepageDetector;
+import info.monitorenter.cpdetector.io.CachingCodepageDetector;
+import info.monitorenter.cpdetector.io.CodepageDetectorChain;
+import info.monitorenter.cpdetector.io.DetectionResult;
+import info.monitorenter.cpdetector.io.ICodepageDetector;
 import info.monitorenter.cpdetector.io.JChardetFacade;
 import info.monitorenter.cpdetector.io.ParsingDetector;
+import info.monitorenter.cpdetector.io.UTF8Detector;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 
 import java.net.MalformedURLException;
 
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 /**
  * @author demian reachable (at)\@ rootring.com
  * 
  * Simple class that tries to detect the encoding of files given on the command-line.
+ * In batch mode (-b) the files are read from a list (e.g. the output of find)
+ * and detected in parallel with machine readable output.
  */
 public class CharsetPrinter {
-    private final CodepageDetectorProxy detector = CodepageDetectorProxy.getInstance();
+    private final ICodepageDetector detector;
 
     public CharsetPrinter() {
-        detector.add(new ParsingDetector(false));
-        detector.add(JChardetFacade.getInstance());
-        detector.add(ASCIIDetector.getInstance());
+        this(CodepageDetectorChain.builder()
+                .add(UTF8Detector.getInstance())
+                .add(new ParsingDetector(false))
+                .add(JChardetFacade.getInstance())
+                .add(ASCIIDetector.getInstance())
+                .build());
+    }
+
+    /**
+     * Prints the encodings detected by the given detector (e.g. a
+     * {@link CachingCodepageDetector} around the default chain).
+     */
+    public CharsetPrinter(ICodepageDetector detector) {
+        this.detector = detector;
     }
 
     public String guessEncoding(File f) throws MalformedURLException, IOException {
-        Charset charset = detector.detectCodepage(f.toURL());
+        Charset charset = detector.detectCodepage(f.toPath());
 
         if (charset == null)
             return null;
@@ -78,10 +117,227 @@ public class CharsetPrinter {
         return charset.name();
     }
 
+    /**
+     * Detects the given file and measures the time it takes. A caching
+     * detector is asked for the charset only as it does not cache the
+     * detector that found it. Charset and detector are left empty unless a
+     * supported charset was detected.
+     */
+    Result detect(String name) {
+        Result ret = new Result(name);
+        long start = System.nanoTime();
+        try {
+            Path path = Paths.get(name);
+            DetectionResult result;
+            if (detector instanceof AbstractCodepageDetector && !(detector instanceof CachingCodepageDetector)) {
+                result = ((AbstractCodepageDetector) detector).detect(path);
+            } else {
+                result = DetectionResult.valueOf(detector.detectCodepage(path), 0, detector);
+            }
+            // UnknownCharset ("void") comes with the last detector asked:
+            if (result.isDetected()) {
+                ret.charset = result.getCharset().name();
+                if (result.getDetector() != null) {
+                    ret.detector = result.getDetector().getClass().getSimpleName();
+                }
+            }
+        } catch (IOException e) {
+            ret.error = e.toString();
+        } catch (InvalidPathException e) {
+            ret.error = e.toString();
+        }
+        ret.micros = (System.nanoTime() - start) / 1000;
+        return ret;
+    }
+
+    /**
+     * Detects the paths read from the given stream on a pool of the given
+     * amount of threads and writes one line per path.
+     * <p>
+     * At most a few paths per thread are in flight, so memory stays constant
+     * for any amount of paths. In order mode the lines follow the order of the
+     * paths, otherwise each line is written and flushed as soon as its
+     * detection has completed (checked whenever a path is read) so that a
+     * consumer of a pipe sees the results while the list is still growing.
+     * <p>
+     * The list is decoded with the charset of file names of the platform
+     * (see {@link #pathCharset()}) instead of the default charset: The paths
+     * (e.g. the output of find) are the raw bytes of the file names, so they
+     * only resolve to the same files if they are decoded like the JVM decodes
+     * the names it reads from the file system.
+     */
+    public void batch(InputStream paths, char separator, int threads, boolean json, boolean ordered, Writer out)
+            throws IOException, InterruptedException {
+        final int window = threads * 4;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CompletionService<Result> done = new ExecutorCompletionService<Result>(pool);
+        ArrayDeque<Future<Result>> inFlight = new ArrayDeque<Future<Result>>(window);
+        Reader in = new BufferedReader(new InputStreamReader(paths, pathCharset()), 1 << 16);
+        StringBuilder line = new StringBuilder();
+        try {
+            String name;
+            while ((name = readPath(in, separator)) != null) {
+                final String path = name;
+                Callable<Result> task = new Callable<Result>() {
+                    public Result call() {
+                        return detect(path);
+                    }
+                };
+                // only the unordered mode drains the completion queue:
+                inFlight.add(ordered ? pool.submit(task) : done.submit(task));
+                if (!ordered) {
+                    // write what completed meanwhile instead of waiting for a full window:
+                    Future<Result> completed;
+                    while ((completed = done.poll()) != null) {
+                        write(remove(inFlight, completed), json, true, line, out);
+                    }
+                }
+                if (inFlight.size() >= window) {
+                    write(ordered ? inFlight.poll() : remove(inFlight, done.take()), json, !ordered, line, out);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                write(ordered ? inFlight.poll() : remove(inFlight, done.take()), json, !ordered, line, out);
+            }
+            out.flush();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the charset the platform encodes file names with (the system
+     * property <code>sun.jnu.encoding</code>) or UTF-8 if that is not
+     * available.
+     *
+     * @return the charset to decode lists of paths with.
+     */
+    static Charset pathCharset() {
+        String name = System.getProperty("sun.jnu.encoding");
+        Charset ret = StandardCharsets.UTF_8;
+        if (name != null) {
+            try {
+                ret = Charset.forName(name);
+            } catch (IllegalArgumentException e) {
+                // illegal or unsupported name: keep UTF-8
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Reads the next non-empty path up to the given separator or the end of
+     * the stream. A carriage return before a newline separator is dropped.
+     *
+     * @return the next path or null at the end of the stream.
+     */
+    static String readPath(Reader in, char separator) throws IOException {
+        StringBuilder ret = new StringBuilder();
+        int c;
+        while (true) {
+            c = in.read();
+            if (c == -1 || c == separator) {
+                if (separator == '\n' && ret.length() > 0 && ret.charAt(ret.length() - 1) == '\r') {
+                    ret.setLength(ret.length() - 1);
+                }
+                if (ret.length() > 0 || c == -1) {
+                    break;
+                }
+            } else {
+                ret.append((char) c);
+            }
+        }
+        return ret.length() == 0 ? null : ret.toString();
+    }
+
+    private static Future<Result> remove(ArrayDeque<Future<Result>> inFlight, Future<Result> future) {
+        inFlight.remove(future);
+        return future;
+    }
+
+    private static void write(Future<Result> future, boolean json, boolean flush, StringBuilder line, Writer out)
+            throws IOException, InterruptedException {
+        Result result;
+        try {
+            result = future.get();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        line.setLength(0);
+        if (json) {
+            result.appendJson(line);
+        } else {
+            result.appendTsv(line);
+        }
+        line.append('\n');
+        out.append(line);
+        if (flush) {
+            out.flush();
+        }
+        if (result.error != null) {
+            System.err.println(result.path + ": " + result.error);
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: CharsetPrinter [-k <cachefile>] <file>...");
+        System.err.println("       CharsetPrinter [-k <cachefile>] -b <listfile>|- [-0] [-n <threads>] [-f tsv|json] [-u]");
+        System.err.println("  -k  cache the results in the file between runs");
+        System.err.println("  -b  batch mode: detect the paths listed in the file (- for stdin), encoded like file names");
+        System.err.println("  -0  the paths are separated by NUL instead of newline (find -print0)");
+        System.err.println("  -n  the amount of detection threads (default: available processors)");
+        System.err.println("  -f  the output format: tsv (path, charset, detector, microseconds) or json lines");
+        System.err.println("  -u  write (and flush) each line as soon as its detection completes instead of in input order");
+    }
+
     public static void main(String[] args) {
-        CharsetPrinter cp = new CharsetPrinter();
+        int first = 0;
+        File cacheFile = null;
+        String list = null;
+        char separator = '\n';
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean json = false;
+        boolean ordered = true;
+        try {
+            for (; first < args.length && args[first].length() > 1 && args[first].charAt(0) == '-'; first++) {
+                if ("-k".equals(args[first]) && first + 1 < args.length) {
+                    cacheFile = new File(args[++first]);
+                } else if ("-b".equals(args[first]) && first + 1 < args.length) {
+                    list = args[++first];
+                } else if ("-0".equals(args[first])) {
+                    separator = '\0';
+                } else if ("-n".equals(args[first]) && first + 1 < args.length) {
+                    threads = Integer.parseInt(args[++first]);
+                    if (threads < 1) {
+                        throw new NumberFormatException("Thread count must be positive: " + threads);
+                    }
+                } else if ("-f".equals(args[first]) && first + 1 < args.length
+                        && ("tsv".equals(args[first + 1]) || "json".equals(args[first + 1]))) {
+                    json = "json".equals(args[++first]);
+                } else if ("-u".equals(args[first])) {
+                    ordered = false;
+                } else {
+                    usage();
+                    System.exit(1);
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.err.println(e.getMessage());
+            usage();
+            System.exit(1);
+        }
+
+        // optional "-k <file>": cache the results in the file between runs:
+        CachingCodepageDetector cache = null;
+        CharsetPrinter cp;
+        if (cacheFile != null) {
+            cache = new CachingCodepageDetector(new CharsetPrinter().detector);
+            cp = new CharsetPrinter(cache);
+        } else {
+            cp = new CharsetPrinter();
+        }
 
-        if (args.length < 1) {
+        if (list == null && args.length <= first) {
             System.err
                     .println("Please provide one or more files to examine on the command line after the command.");
         }
@@ -89,7 +345,19 @@ public class CharsetPrinter {
         try {
             File f;
 
-            for (int walk = 0; walk < args.length; walk++) {
+            if (cache != null) {
+                cache.load(cacheFile.toPath());
+            }
+            if (list != null) {
+                InputStream paths = "-".equals(list) ? System.in : new FileInputStream(list);
+                try {
+                    cp.batch(paths, separator, threads, json, ordered, new BufferedWriter(new OutputStreamWriter(
+                            System.out, StandardCharsets.UTF_8), 1 << 16));
+                } finally {
+                    paths.close();
+                }
+            }
+            for (int walk = first; walk < args.length; walk++) {
                 f = new File(args[walk]);
 
                 if (f.exists() && f.canRead() && f.isFile()) {
@@ -100,11 +368,116 @@ public class CharsetPrinter {
                     System.out.println(args[walk] + " appears to be UNKNOWN");
                 }
             }
+            if (cache != null) {
+                cache.save(cacheFile.toPath());
+            }
         } catch (MalformedURLException e) {
             System.err.println("The filename makes no sense.");
         } catch (IOException e) {
             System.err.println("Problem reading from file");
             e.printStackTrace();
+        } catch (InterruptedException e) {
+            System.err.println("Interrupted");
+        }
+    }
+
+    /**
+     * The outcome of detecting a single path in batch mode.
+     */
+    static final class Result {
+        final String path;
+        String charset;
+        String detector;
+        String error;
+        long micros;
+
+        Result(String path) {
+            this.path = path;
+        }
+
+        /** Appends path, charset (or UNKNOWN), detector (or -) and microseconds, tab separated. */
+        void appendTsv(StringBuilder out) {
+            appendTsv(out, path);
+            out.append('\t');
+            appendTsv(out, charset == null ? "UNKNOWN" : charset);
+            out.append('\t');
+            appendTsv(out, detector == null ? "-" : detector);
+            out.append('\t').append(micros);
+        }
+
+        /** Appends a JSON object, the error member only if there was an error. */
+        void appendJson(StringBuilder out) {
+            out.append("{\"path\":");
+            appendJson(out, path);
+            out.append(",\"charset\":");
+            appendJson(out, charset);
+            out.append(",\"detector\":");
+            appendJson(out, detector);
+            out.append(",\"micros\":").append(micros);
+            if (error != null) {
+                out.append(",\"error\":");
+                appendJson(out, error);
+            }
+            out.append('}');
+        }
+
+        private static void appendTsv(StringBuilder out, String value) {
+            char c;
+            for (int i = 0; i < value.length(); i++) {
+                c = value.charAt(i);
+                switch (c) {
+                case '\t':
+                    out.append("\\t");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                default:
+                    out.append(c);
+                }
+            }
+        }
+
+        private static void appendJson(StringBuilder out, String value) {
+            if (value == null) {
+                out.append("null");
+                return;
+            }
+            char c;
+            out.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                c = value.charAt(i);
+                switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", Integer.valueOf(c)));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+            out.append('"');
         }
     }
 }
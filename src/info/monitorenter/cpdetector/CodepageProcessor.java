@@ -64,32 +64,36 @@
  */
 package info.monitorenter.cpdetector;
 
+import info.monitorenter.cpdetector.io.CachingCodepageDetector;
 import info.monitorenter.cpdetector.io.CodepageDetectorProxy;
 import info.monitorenter.cpdetector.io.FileFilterExtensions;
 import info.monitorenter.cpdetector.io.ICodepageDetector;
 import info.monitorenter.cpdetector.io.JChardetFacade;
 import info.monitorenter.cpdetector.io.ParsingDetector;
+import info.monitorenter.cpdetector.io.Transcoder;
+import info.monitorenter.cpdetector.io.UTF8Detector;
 import info.monitorenter.cpdetector.io.UnknownCharset;
+import info.monitorenter.cpdetector.io.UnsupportedCharset;
 import info.monitorenter.cpdetector.reflect.SingletonLoader;
+import info.monitorenter.util.ContentHash;
 import info.monitorenter.util.FileUtil;
 import jargs.gnu.CmdLineParser;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileFilter;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Reader;
-import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -98,6 +102,11 @@ import java.util.MissingResourceException;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * An executable command line interface for batch processing files with cpdetector.
@@ -179,14 +188,82 @@ public class CodepageProcessor
   private Charset targetCodepage = null;
 
   /**
-   * Internal buffer for codepage transformation (argument -t).
+   * If set (argument -k), detection results are cached in this file between runs.
    */
-  private static char[] transcodeBuffer = new char[1024];
+  private File cacheFile = null;
 
   /**
-   * Internal buffer for document transport.
+   * Caches the results of {@link #detector} if a cache file was given (argument -k), else null.
    */
-  private static byte[] rawtransportBuffer = new byte[1024];
+  private CachingCodepageDetector cache = null;
+
+  /**
+   * If true (argument -D), documents with identical content (same length and content hash) are
+   * detected and transcoded only once: copies reuse the result of the first document.
+   */
+  private boolean dedup = false;
+
+  /**
+   * If true (argument -H), the outputs of duplicate documents are hard links to the output of the
+   * first document instead of copies.
+   */
+  private boolean hardlinkDuplicates = false;
+
+  /**
+   * The first document processed for each content (argument -D).
+   */
+  private Map<ContentKey, Original> originals = new ConcurrentHashMap<ContentKey, Original>();
+
+  /**
+   * The amount of documents that were skipped as duplicates (argument -D).
+   */
+  private AtomicInteger duplicates = new AtomicInteger();
+
+  /**
+   * The amount of threads processing documents (argument --threads). Default is one: the collection
+   * is processed by the calling thread.
+   */
+  private int threads = 1;
+
+  /**
+   * If set (argument -j), completed documents are recorded in this journal file.
+   */
+  private File journalFile = null;
+
+  /**
+   * If true (argument --resume), the documents completed in the journal are skipped.
+   */
+  private boolean resume = false;
+
+  /**
+   * The journal of the current run (argument -j) or null.
+   */
+  private ProcessingJournal journal = null;
+
+  /**
+   * The amount of documents skipped because the journal showed they were completed.
+   */
+  private AtomicInteger resumed = new AtomicInteger();
+
+  /**
+   * If set (argument --link), documents that are sorted without transformation are linked into the
+   * output directory instead of copied.
+   */
+  private LinkMode linkMode = null;
+
+  /**
+   * What to do on malformed input or unmappable characters when transforming (argument -M).
+   */
+  private CodingErrorAction errorAction = CodingErrorAction.REPLACE;
+
+  /**
+   * The transcoder for codepage transformation (argument -t), one per worker thread.
+   */
+  private final ThreadLocal<Transcoder> transcoders = new ThreadLocal<Transcoder>() {
+    protected Transcoder initialValue() {
+      return new Transcoder(Transcoder.DEFAULT_BUFFER_SIZE, CodepageProcessor.this.errorAction);
+    }
+  };
 
   public CodepageProcessor() {
     super();
@@ -201,6 +278,15 @@ public class CodepageProcessor
     this.addCmdLineOption("transform", new CmdLineParser.Option.StringOption('t', "transform"));
     this.addCmdLineOption("detectors", new CmdLineParser.Option.StringOption('d', "detectors"));
     this.addCmdLineOption("charsets", new CmdLineParser.Option.BooleanOption('c', "charsets"));
+    this.addCmdLineOption("cache", new CmdLineParser.Option.StringOption('k', "cache"));
+    this.addCmdLineOption("cacheByContent", new CmdLineParser.Option.BooleanOption('K', "cacheByContent"));
+    this.addCmdLineOption("dedup", new CmdLineParser.Option.BooleanOption('D', "dedup"));
+    this.addCmdLineOption("hardlinkDuplicates", new CmdLineParser.Option.BooleanOption('H', "hardlinkDuplicates"));
+    this.addCmdLineOption("threads", new CmdLineParser.Option.IntegerOption('n', "threads"));
+    this.addCmdLineOption("journal", new CmdLineParser.Option.StringOption('j', "journal"));
+    this.addCmdLineOption("resume", new CmdLineParser.Option.BooleanOption('R', "resume"));
+    this.addCmdLineOption("link", new CmdLineParser.Option.StringOption('L', "link"));
+    this.addCmdLineOption("malformed", new CmdLineParser.Option.StringOption('M', "malformed"));
   }
 
   public void parseArgs(String[] cmdLineArgs) throws Exception {
@@ -215,6 +301,15 @@ public class CodepageProcessor
     Object transformOption = this.getParsedCmdLineOption("transform");
     Object detectorOption = this.getParsedCmdLineOption("detectors");
     Object charsetsOption = this.getParsedCmdLineOption("charsets");
+    Object cacheOption = this.getParsedCmdLineOption("cache");
+    Object cacheByContentOption = this.getParsedCmdLineOption("cacheByContent");
+    Object dedupOption = this.getParsedCmdLineOption("dedup");
+    Object hardlinkDuplicatesOption = this.getParsedCmdLineOption("hardlinkDuplicates");
+    Object threadsOption = this.getParsedCmdLineOption("threads");
+    Object journalOption = this.getParsedCmdLineOption("journal");
+    Object resumeOption = this.getParsedCmdLineOption("resume");
+    Object linkOption = this.getParsedCmdLineOption("link");
+    Object malformedOption = this.getParsedCmdLineOption("malformed");
 
     if (charsetsOption != null) {
       this.printCharsets = ((Boolean) charsetsOption).booleanValue();
@@ -251,6 +346,49 @@ public class CodepageProcessor
           this.verbose = true;
         }
       }
+      if (dedupOption != null) {
+        this.dedup = ((Boolean) dedupOption).booleanValue();
+      }
+      if (hardlinkDuplicatesOption != null) {
+        this.hardlinkDuplicates = ((Boolean) hardlinkDuplicatesOption).booleanValue();
+      }
+      if (threadsOption != null) {
+        this.threads = Math.max(1, ((Integer) threadsOption).intValue());
+      }
+      if (journalOption != null) {
+        this.journalFile = new File(journalOption.toString());
+      }
+      if (resumeOption != null) {
+        this.resume = ((Boolean) resumeOption).booleanValue();
+        if (this.resume && this.journalFile == null) {
+          usage();
+          throw new MissingResourceException("Parameter for journal file is missing.", "String", "-j");
+        }
+      }
+      if (linkOption != null) {
+        String mode = linkOption.toString();
+        if ("hard".equalsIgnoreCase(mode)) {
+          this.linkMode = LinkMode.HARD;
+        } else if ("symbolic".equalsIgnoreCase(mode)) {
+          this.linkMode = LinkMode.SYMBOLIC;
+        } else {
+          usage();
+          throw new IllegalArgumentException("Argument --link has to be \"hard\" or \"symbolic\": " + mode);
+        }
+      }
+      if (malformedOption != null) {
+        String action = malformedOption.toString();
+        if ("replace".equalsIgnoreCase(action)) {
+          this.errorAction = CodingErrorAction.REPLACE;
+        } else if ("ignore".equalsIgnoreCase(action)) {
+          this.errorAction = CodingErrorAction.IGNORE;
+        } else if ("report".equalsIgnoreCase(action)) {
+          this.errorAction = CodingErrorAction.REPORT;
+        } else {
+          usage();
+          throw new IllegalArgumentException("Argument -M has to be \"replace\", \"ignore\" or \"report\": " + action);
+        }
+      }
       if (waitOption != null) {
         this.wait = ((Integer) waitOption).intValue() * 1000;
       }
@@ -301,9 +439,17 @@ public class CodepageProcessor
       }
       // default detector initialization:
       else {
+        this.detector.add(UTF8Detector.getInstance());
         this.detector.add(new ParsingDetector(this.verbose));
         this.detector.add(JChardetFacade.getInstance());
       }
+      if (cacheOption != null) {
+        this.cacheFile = new File(cacheOption.toString());
+        boolean byContent = (cacheByContentOption != null)
+            && ((Boolean) cacheByContentOption).booleanValue();
+        this.cache = new CachingCodepageDetector(this.detector,
+            CachingCodepageDetector.DEFAULT_CAPACITY, byContent);
+      }
       this.loadCodepages();
     }
   }
@@ -338,18 +484,19 @@ public class CodepageProcessor
 
   /**
    * <p>
-   * Recursive depth first search for all documents with .txt - ending (case-insensitive).
+   * Depth first search for all documents accepted by the extension filter in the directory subtree
+   * of the argument f.
    * </p>
    * <p>
-   * The given list is filled with all files with a ".txt" extension that were found in the
-   * directory subtree of the argument f.
-   * </p>
-   * <p>
-   * No check for null or existence of f is made here, so keep it private.
+   * Directories are streamed entry by entry ({@link Files#newDirectoryStream(Path)}) instead of
+   * being listed as a whole, and pending directories are kept in an explicit stack instead of the
+   * call stack: Huge directories and deep trees need neither much heap nor stack. The extension
+   * filter is applied to the plain names, <code>File</code> instances are only created for the
+   * accepted documents.
    * </p>
    * 
    * @param f
-   *          The current directory or file (if we visit a leaf).
+   *          The collection root directory or a single document.
    */
   private void processRecursive(File f) throws Exception {
     if (f == null) {
@@ -358,14 +505,103 @@ public class CodepageProcessor
     if (!f.exists()) {
       throw new IllegalArgumentException(f.getAbsolutePath() + " does not exist.");
     }
-    if (f.isDirectory()) {
-      File[] childs = f.listFiles();
-      for (int i = childs.length - 1; i >= 0; i--) {
-        processRecursive(childs[i]);
+    if (!f.isDirectory()) {
+      if (this.extensionFilter.accept(f)) {
+        this.process(f);
       }
-    } else if (this.extensionFilter.accept(f)) {
-      this.process(f);
+      return;
+    }
+    Deque<Path> pending = new ArrayDeque<Path>();
+    pending.push(f.toPath());
+    DirectoryStream<Path> entries;
+    String name;
+    while (!pending.isEmpty()) {
+      entries = Files.newDirectoryStream(pending.pop());
+      try {
+        for (Path entry : entries) {
+          if (Files.isDirectory(entry)) {
+            pending.push(entry);
+          } else {
+            name = entry.getFileName().toString();
+            if (this.accept(name, entry)) {
+              this.process(entry.toFile());
+            }
+          }
+        }
+      } finally {
+        entries.close();
+      }
+    }
+  }
+
+  /**
+   * Applies the extension filter to the given document, on the plain name if possible.
+   * <p>
+   * 
+   * @param name
+   *          the name of the document without directories.
+   * 
+   * @param document
+   *          the document.
+   * 
+   * @return true if the document should be processed.
+   */
+  private boolean accept(String name, Path document) {
+    boolean result;
+    if (this.extensionFilter instanceof FileFilterExtensions) {
+      result = ((FileFilterExtensions) this.extensionFilter).accept(name);
+    } else {
+      result = this.extensionFilter.accept(document.toFile());
     }
+    return result;
+  }
+
+  /**
+   * Processes the given collection root with {@link #threads} threads: Each directory is streamed
+   * by a task on a work-stealing {@link ForkJoinPool} that forks a task per subdirectory and per
+   * batch of documents, so idle threads take over the subtrees and documents of busy ones.
+   * <p>
+   * 
+   * @param root
+   *          the collection root.
+   * 
+   * @throws Exception
+   *           the first failure of a document.
+   */
+  private void processParallel(File root) throws Exception {
+    if (!root.isDirectory()) {
+      this.processRecursive(root);
+      return;
+    }
+    ForkJoinPool pool = new ForkJoinPool(this.threads);
+    try {
+      pool.invoke(new DirectoryTask(root.toPath()));
+    } catch (ProcessingException pe) {
+      throw (Exception) pe.getCause();
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Creates the given directory and its parents if they do not exist. Safe against other threads
+   * creating the same directories concurrently.
+   * <p>
+   * 
+   * @param dir
+   *          the directory to create.
+   * 
+   * @return true if the directory did not exist before.
+   * 
+   * @throws IOException
+   *           if the directory cannot be created.
+   */
+  private static boolean mkdirs(File dir) throws IOException {
+    boolean result = !dir.isDirectory();
+    if (result) {
+      Files.createDirectories(dir.toPath());
+    }
+    return result;
   }
 
   public final void process() throws Exception {
@@ -373,8 +609,37 @@ public class CodepageProcessor
       this.printCharsets();
     } else {
       this.verifyFiles();
+      if (this.cache != null) {
+        this.cache.load(this.cacheFile.toPath());
+      }
+      if (this.journalFile != null) {
+        this.journal = new ProcessingJournal(this.journalFile.toPath(), this.resume);
+      }
       this.describe();
-      this.processRecursive(this.collectionRoot);
+      try {
+        if (this.threads > 1) {
+          this.processParallel(this.collectionRoot);
+        } else {
+          this.processRecursive(this.collectionRoot);
+        }
+      } finally {
+        if (this.journal != null) {
+          this.journal.close();
+        }
+      }
+      if (this.journal != null) {
+        System.out.println("Journal: " + this.resumed.get() + " documents completed before, "
+            + this.journal.getRecordedCount() + " documents completed now.");
+      }
+      if (this.cache != null) {
+        this.cache.save(this.cacheFile.toPath());
+        System.out.println("Detection cache: " + this.cache.getHits() + " hits, "
+            + this.cache.getMisses() + " misses, " + this.cache.getEvictions() + " evictions.");
+      }
+      if (this.dedup) {
+        System.out.println("Deduplication: " + this.duplicates.get() + " duplicates of "
+            + this.originals.size() + " distinct documents.");
+      }
     }
     System.out.println("No exceptional program flow occured!");
   }
@@ -418,18 +683,113 @@ public class CodepageProcessor
   }
 
   /**
-   * @param files
+   * Processes the given document unless the journal (argument -j) shows it was completed by a
+   * former run (argument --resume). Completed documents are recorded in the journal.
+   * <p>
+   * 
+   * @param document
+   *          the document to process.
+   * 
+   * @throws Exception
+   *           if processing fails.
    */
   private void process(File document) throws Exception {
-    Charset charset = null;
+    if (this.journal == null) {
+      this.sort(document);
+    } else {
+      String path = document.getAbsolutePath();
+      if (this.journal.isCompleted(path)) {
+        this.resumed.incrementAndGet();
+      } else {
+        this.journal.record(path, this.sort(document));
+      }
+    }
+  }
+
+  /**
+   * Detects the charset of the given document and sorts (or transforms) it into the output
+   * directory.
+   * <p>
+   * The document is opened once: Its content is mapped and the same mapping is hashed (argument
+   * -D), detected and transformed (argument -t), untransformed documents are copied from the same
+   * channel.
+   * <p>
+   * 
+   * @param document
+   *          the document to process.
+   * 
+   * @return the detected charset or null / unknown if it could not be detected.
+   * 
+   * @throws Exception
+   *           if processing fails.
+   */
+  private Charset sort(File document) throws Exception {
+    Charset result;
     try {
       Thread.sleep(this.wait);
     } catch (InterruptedException e) {
       // nop
     }
+    FileChannel channel = FileChannel.open(document.toPath(), StandardOpenOption.READ);
+    try {
+      result = this.sort(document, channel, CodepageProcessor.map(channel));
+    } finally {
+      channel.close();
+    }
+    return result;
+  }
+
+  /**
+   * Maps the content of the given document.
+   * <p>
+   * 
+   * @param channel
+   *          the opened document.
+   * 
+   * @return the mapped content or null if the document is too large for a single mapping or the
+   *         file system does not support mapping.
+   * 
+   * @throws IOException
+   *           if mapping fails.
+   */
+  private static ByteBuffer map(FileChannel channel) throws IOException {
+    ByteBuffer result = null;
+    long size = channel.size();
+    if (size <= Integer.MAX_VALUE) {
+      try {
+        result = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      } catch (UnsupportedOperationException uoe) {
+        // read from the path.
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Detects the charset of the given opened document and sorts (or transforms) it into the output
+   * directory.
+   * <p>
+   * 
+   * @param document
+   *          the document to process.
+   * 
+   * @param channel
+   *          the opened document.
+   * 
+   * @param content
+   *          the mapped content of the document or null if it could not be mapped.
+   * 
+   * @return the detected charset or null / unknown if it could not be detected.
+   * 
+   * @throws Exception
+   *           if processing fails.
+   */
+  private Charset sort(File document, FileChannel channel, ByteBuffer content) throws Exception {
+    Charset charset = null;
     Map.Entry filenameFinder;
     String prefix; // the path between this.collectionRoot and the file.
-    File target;
+    File target = null;
+    boolean transformed = false;
 
     filenameFinder = FileUtil.cutDirectoryInformation(document.getAbsolutePath());
     prefix = document.getAbsolutePath();
@@ -443,7 +803,26 @@ public class CodepageProcessor
     if (this.verbose) {
       System.out.println("Processing document: " + prefix + "/" + filenameFinder.getValue());
     }
-    charset = this.detector.detectCodepage(document.toURL());
+    ContentKey contentKey = null;
+    Original original = null;
+    if (this.dedup) {
+      contentKey = new ContentKey(document.length(), (content == null) ? ContentHash
+          .hash(document.toPath()) : ContentHash.hash(content.duplicate()));
+      original = this.originals.get(contentKey);
+    }
+    if (original != null) {
+      this.duplicates.incrementAndGet();
+      if (this.verbose) {
+        System.out.println("  Duplicate of: " + original.document.getAbsolutePath());
+      }
+      charset = original.charset;
+    } else if (this.cache != null) {
+      charset = this.cache.detectCodepage(document.toPath(), content);
+    } else if (content != null) {
+      charset = this.detector.detectDocument(content);
+    } else {
+      charset = this.detector.detectCodepage(document.toPath());
+    }
 
     if ((charset == null) || (charset == UnknownCharset.getInstance())) {
       if (this.verbose) {
@@ -453,15 +832,25 @@ public class CodepageProcessor
         if (this.verbose) {
           System.out.println("  Dropping document.");
         }
-        return;
+        if (this.dedup && original == null) {
+          this.originals.put(contentKey, new Original(document, charset, null, false));
+        }
+        return charset;
       } else {
         // fake charset for name construction:
         charset = UnknownCharset.getInstance();
       }
     }
 
-    if ((this.targetCodepage != null) && (charset != null)
-        && (UnknownCharset.getInstance() != charset)) {
+    if ((this.targetCodepage != null) && (original != null) && !original.transformed
+        && (original.target != null) && (charset != null)
+        && (UnknownCharset.getInstance() != charset) && !(charset instanceof UnsupportedCharset)) {
+      // the original was no valid document of its charset ("-M report"): sort it alike.
+      System.out.println("Skipping transformation of document " + document.getAbsolutePath()
+          + " because it is a duplicate of " + original.document.getAbsolutePath()
+          + " which could not be transformed.");
+    } else if ((this.targetCodepage != null) && (charset != null)
+        && (UnknownCharset.getInstance() != charset) && !(charset instanceof UnsupportedCharset)) {
 
       // transform it:
       if (prefix.length() > 0) {
@@ -470,7 +859,7 @@ public class CodepageProcessor
       } else {
         target = new File(this.outputDir.getAbsolutePath() + "/" + this.targetCodepage.name() + "/");
       }
-      if (target.mkdirs()) {
+      if (CodepageProcessor.mkdirs(target)) {
         if (this.verbose) {
           System.out.println("  Created directory : " + target.getAbsolutePath());
         }
@@ -483,27 +872,26 @@ public class CodepageProcessor
         if (this.verbose) {
           System.out.println("  File already exists and has same size. Skipping move.");
         }
+        transformed = true;
+      } else if (original != null) {
+        this.duplicate(original.target, target);
       } else {
-        target.createNewFile();
-        Reader in = new BufferedReader(
-            new InputStreamReader(new FileInputStream(document), charset));
-        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(target),
-            this.targetCodepage));
-
-        // da flow
-        int toRead = transcodeBuffer.length;
-        int len;
-        while ((len = in.read(transcodeBuffer, 0, toRead)) != -1) {
-          out.write(transcodeBuffer, 0, len);
+        try {
+          this.transform(document, content, charset, target);
+          transformed = true;
+        } catch (CharacterCodingException cce) {
+          // malformed input with "-M report": sort the document untransformed.
+          System.out.println("Skipping transformation of document " + document.getAbsolutePath()
+              + " because it is no valid " + charset.name() + " (" + cce + ").");
+          Files.deleteIfExists(target.toPath());
+          target = null;
         }
-        in.close();
-        out.close();
-      }
-    } else {
-      if (this.targetCodepage != null) {
-        System.out.println("Skipping transformation of document " + document.getAbsolutePath()
-            + " because it's charset could not be detected.");
       }
+    } else if (this.targetCodepage != null) {
+      System.out.println("Skipping transformation of document " + document.getAbsolutePath()
+          + " because it's charset could not be detected or is not supported.");
+    }
+    if (target == null) {
       if (prefix.length() > 0) {
         target = new File(this.outputDir.getAbsolutePath() + "/" + charset.name().toLowerCase()
             + "/" + prefix + "/");
@@ -511,7 +899,7 @@ public class CodepageProcessor
         target = new File(this.outputDir.getAbsolutePath() + "/" + charset.name().toLowerCase()
             + "/");
       }
-      if (target.mkdirs()) {
+      if (CodepageProcessor.mkdirs(target)) {
         if (this.verbose) {
           System.out.println("Created directory : " + target.getAbsolutePath());
         }
@@ -521,33 +909,177 @@ public class CodepageProcessor
 
         System.out.println("  Moving to \"" + target.getAbsolutePath() + "\".");
       }
-      this.rawCopy(document, target);
+      if (this.linkMode != null) {
+        this.link(document, target, this.linkMode);
+      } else if (original != null) {
+        this.duplicate(original.target, target);
+      } else {
+        this.rawCopy(channel, target);
+      }
+    }
+    if (this.dedup && original == null) {
+      this.originals.put(contentKey, new Original(document, charset, target, transformed));
     }
+    return charset;
   }
 
-  private void rawCopy(File from, File to) throws IOException {
-    if (to.exists()) {
-      if (from.length() == to.length()) {
+  /**
+   * Writes the output of a duplicate document by hard linking (argument -H) or copying the output
+   * of the first document with the same content.
+   * <p>
+   * 
+   * @param from
+   *          the output of the first document with the same content.
+   * 
+   * @param to
+   *          the output to write.
+   * 
+   * @throws IOException
+   *           if writing fails.
+   */
+  private void duplicate(File from, File to) throws IOException {
+    if (this.hardlinkDuplicates) {
+      this.link(from, to, LinkMode.HARD);
+    } else {
+      this.rawCopy(from, to);
+    }
+  }
+
+  /**
+   * Links the given target to the given document. Hard links fall back to a copy if the file system
+   * does not allow them (e.g. target on another device).
+   * <p>
+   * 
+   * @param from
+   *          the document.
+   * 
+   * @param to
+   *          the link to create.
+   * 
+   * @param mode
+   *          the kind of link.
+   * 
+   * @throws IOException
+   *           if linking fails.
+   */
+  private void link(File from, File to, LinkMode mode) throws IOException {
+    Path source = from.toPath().toAbsolutePath();
+    Path target = to.toPath();
+    if (mode == LinkMode.SYMBOLIC) {
+      if (Files.isSymbolicLink(target) && Files.readSymbolicLink(target).equals(source)) {
         return;
       }
+      Files.deleteIfExists(target);
+      Files.createSymbolicLink(target, source);
     } else {
-      to.createNewFile();
+      if (Files.exists(target) && Files.isSameFile(source, target)) {
+        return;
+      }
+      try {
+        Files.deleteIfExists(target);
+        Files.createLink(target, source);
+      } catch (IOException ioe) {
+        // e.g. other file system: copy.
+        this.rawCopy(from, to);
+      } catch (UnsupportedOperationException uoe) {
+        // file system without links: copy.
+        this.rawCopy(from, to);
+      }
     }
+  }
+
+  /**
+   * Copies the given document to the given target, unless the target exists with the same length.
+   * The data is transferred by the operating system ({@link FileChannel#transferTo(long, long,
+   * java.nio.channels.WritableByteChannel)}) without passing through the heap.
+   * <p>
+   * 
+   * @param from
+   *          the document.
+   * 
+   * @param to
+   *          the copy.
+   * 
+   * @throws IOException
+   *           if copying fails.
+   */
+  private void rawCopy(File from, File to) throws IOException {
+    FileChannel in = FileChannel.open(from.toPath(), StandardOpenOption.READ);
+    try {
+      this.rawCopy(in, to);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Copies the given opened document to the given target, unless the target exists with the same
+   * length (see {@link #rawCopy(File, File)}). The channel is not closed.
+   * <p>
+   * 
+   * @param in
+   *          the opened document.
+   * 
+   * @param to
+   *          the copy.
+   * 
+   * @throws IOException
+   *           if copying fails.
+   */
+  private void rawCopy(FileChannel in, File to) throws IOException {
     /*
      * Target existed and had the same length : skip: Target existed and had a different length:
-     * overwrite target. Target did not exist: Create it first before writing.
+     * overwrite target. Target did not exist: Create it.
      */
-    InputStream in = new BufferedInputStream(new FileInputStream(from));
-    OutputStream out = new BufferedOutputStream(new FileOutputStream(to));
+    long size = in.size();
+    if (to.exists() && size == to.length()) {
+      return;
+    }
+    FileChannel out = FileChannel.open(to.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    try {
+      long position = 0;
+      while (position < size) {
+        position += in.transferTo(position, size - position, out);
+      }
+    } finally {
+      out.close();
+    }
+  }
 
-    // da flow
-    int toRead = rawtransportBuffer.length;
-    int len;
-    while ((len = in.read(rawtransportBuffer, 0, toRead)) != -1) {
-      out.write(rawtransportBuffer, 0, len);
+  /**
+   * Transforms the given document to the target codepage (argument -t).
+   * <p>
+   * 
+   * @param document
+   *          the document.
+   * 
+   * @param content
+   *          the mapped content of the document or null to read the document.
+   * 
+   * @param charset
+   *          the detected charset of the document.
+   * 
+   * @param to
+   *          the transformed document to write.
+   * 
+   * @throws IOException
+   *           if reading or writing fails or the document is malformed (argument -M).
+   */
+  private void transform(File document, ByteBuffer content, Charset charset, File to)
+      throws IOException {
+    Transcoder transcoder = this.transcoders.get();
+    if (content == null) {
+      transcoder.transcode(document.toPath(), charset, to.toPath(), this.targetCodepage);
+    } else {
+      FileChannel out = FileChannel.open(to.toPath(), StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      try {
+        transcoder.transcode(content.duplicate(), charset, out, this.targetCodepage);
+      } finally {
+        out.close();
+      }
     }
-    in.close();
-    out.close();
   }
 
   protected void describe() {
@@ -568,14 +1100,49 @@ public class CodepageProcessor
     msg.append("  wait                   : ");
     msg.append(this.wait);
     msg.append("\n");
+    msg.append("  threads                : ");
+    msg.append(this.threads);
+    msg.append("\n");
+    if (this.journal != null) {
+      msg.append("  journal                : ");
+      msg.append(this.journalFile.getAbsolutePath());
+      if (this.resume) {
+        msg.append(" (resuming after ");
+        msg.append(this.journal.getCompletedCount());
+        msg.append(" documents)");
+      }
+      msg.append("\n");
+    }
+    if (this.linkMode != null) {
+      msg.append("  link                   : ");
+      msg.append(this.linkMode.name().toLowerCase());
+      msg.append("\n");
+    }
+    msg.append("  deduplicate            : ");
+    msg.append(this.dedup);
+    if (this.dedup && this.hardlinkDuplicates) {
+      msg.append(" (hard links)");
+    }
+    msg.append("\n");
     if (this.targetCodepage != null) {
       msg.append("  transform to codepage  : ");
       msg.append(this.targetCodepage.name());
       msg.append("\n");
+      msg.append("  malformed input        : ");
+      msg.append(this.errorAction.toString().toLowerCase());
+      msg.append("\n");
     }
     msg.append("  detection algorithm    : ");
     msg.append("\n");
-    msg.append(this.detector.toString());
+    if (this.cache != null) {
+      msg.append("  cache                  : ");
+      msg.append(this.cacheFile.getAbsolutePath());
+      msg.append(this.cache.isContentKeys() ? " (by content hash)" : " (by path, length and modification time)");
+      msg.append("\n");
+      msg.append(this.cache.toString());
+    } else {
+      msg.append(this.detector.toString());
+    }
     System.out.println(msg.toString());
   }
 
@@ -606,11 +1173,26 @@ public class CodepageProcessor
     tmp.append("                    This is only possible for documents that are detected to have a  \n");
     tmp.append("                    codepage that is supported by the current java VM. If not possible \n");
     tmp.append("                    sorting will be done as normal. \n");
+    tmp.append("  -M <action>     : What to do with malformed input or unmappable characters when transforming (-t):\n");
+    tmp.append("                    \"replace\" (default), \"ignore\" or \"report\" (sort the document as normal).\n");
     tmp.append("  -d              : Semicolon-separated list of fully qualified classnames. \n");
     tmp.append("                    These classes will be casted to ICodepageDetector instances \n");
     tmp.append("                    and used in the order specified.\n");
-    tmp.append("                    If this argument is ommited, a HTMLCodepageDetector followed by .\n");
-    tmp.append("                    a JChardetFacade is used by default.\n");
+    tmp.append("                    If this argument is ommited, a UTF8Detector followed by a\n");
+    tmp.append("                    ParsingDetector and a JChardetFacade is used by default.\n");
+    tmp.append("  -k <file>       : Cache detection results in the given file between runs. Unchanged\n");
+    tmp.append("                    documents (same path, length and modification time) are not detected again.\n");
+    tmp.append("  -K              : Identify cached documents by a hash of their content instead of their path\n");
+    tmp.append("                    (requires -k). Identical copies share one cached result.\n");
+    tmp.append("  -D              : Detect and transform documents with identical content (same length and\n");
+    tmp.append("                    64 bit content hash) only once. Copies reuse the output of the first one.\n");
+    tmp.append("  -n, --threads <int> : Process documents with <int> threads in parallel (default 1).\n");
+    tmp.append("  -j <file>       : Record completed documents in the given journal file.\n");
+    tmp.append("  -R, --resume    : Skip the documents completed in the journal (requires -j), e.g. after\n");
+    tmp.append("                    a crash. Without it an existing journal is started anew.\n");
+    tmp.append("  -L, --link=hard|symbolic : Link documents into the output directory instead of\n");
+    tmp.append("                    copying them (not for documents transformed with -t).\n");
+    tmp.append("  -H              : Hard link the outputs of duplicates (requires -D) instead of copying them.\n");
     tmp.append("  Mandatory (if no -c option given) :\n");
     tmp.append("  -r            : Root directory containing the collection (recursive).\n");
     tmp.append("  -o            : Output directory containing the sorted collection.\n");
@@ -646,6 +1228,235 @@ public class CodepageProcessor
     }
   }
 
+  /**
+   * The kinds of links to sort documents into the output directory (argument --link).
+   * <p>
+   * 
+   * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+   */
+  private static enum LinkMode {
+    /** Hard links: fall back to copies across file systems. */
+    HARD,
+    /** Symbolic links to the absolute paths of the documents. */
+    SYMBOLIC;
+  }
+
+  /**
+   * Streams a directory and forks a task for each subdirectory and each batch of accepted
+   * documents.
+   * <p>
+   * 
+   * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+   */
+  private final class DirectoryTask extends RecursiveAction {
+
+    /** Generated <code>serialVersionUID</code>. */
+    private static final long serialVersionUID = 2906214011498372917L;
+
+    /** The amount of documents processed by one {@link DocumentsTask}. */
+    private static final int BATCH = 64;
+
+    /**
+     * The amount of forked tasks per thread of the pool a directory may have pending before it
+     * waits for the oldest: Listing is much faster than detection, so without a bound a huge
+     * directory would be held in memory in queued tasks.
+     */
+    private static final int PENDING_PER_THREAD = 4;
+
+    /** The directory to process. */
+    private final Path directory;
+
+    DirectoryTask(final Path directory) {
+      this.directory = directory;
+    }
+
+    /**
+     * @see java.util.concurrent.RecursiveAction#compute()
+     */
+    protected void compute() {
+      ArrayDeque<RecursiveAction> forked = new ArrayDeque<RecursiveAction>();
+      int pending = DirectoryTask.PENDING_PER_THREAD * ForkJoinTask.getPool().getParallelism();
+      try {
+        DirectoryStream<Path> entries = Files.newDirectoryStream(this.directory);
+        try {
+          List<File> batch = new ArrayList<File>(DirectoryTask.BATCH);
+          String name;
+          RecursiveAction task;
+          for (Path entry : entries) {
+            if (Files.isDirectory(entry)) {
+              task = new DirectoryTask(entry);
+              this.fork(task, forked, pending);
+            } else {
+              name = entry.getFileName().toString();
+              if (CodepageProcessor.this.accept(name, entry)) {
+                batch.add(entry.toFile());
+                if (batch.size() == DirectoryTask.BATCH) {
+                  task = new DocumentsTask(batch);
+                  this.fork(task, forked, pending);
+                  batch = new ArrayList<File>(DirectoryTask.BATCH);
+                }
+              }
+            }
+          }
+          if (batch.size() > 0) {
+            new DocumentsTask(batch).compute();
+          }
+        } finally {
+          entries.close();
+        }
+      } catch (IOException ioe) {
+        throw new ProcessingException(ioe);
+      } finally {
+        for (RecursiveAction task : forked) {
+          task.join();
+        }
+      }
+    }
+
+    /**
+     * Forks the given task after waiting for (and helping with) the oldest forked tasks until
+     * less than the given amount is pending.
+     * <p>
+     * 
+     * @param task
+     *          the task to fork.
+     * 
+     * @param forked
+     *          the pending tasks, oldest first.
+     * 
+     * @param pending
+     *          the maximum amount of pending tasks.
+     */
+    private void fork(final RecursiveAction task, final ArrayDeque<RecursiveAction> forked,
+        final int pending) {
+      while (forked.size() >= pending) {
+        forked.poll().join();
+      }
+      task.fork();
+      forked.add(task);
+    }
+  }
+
+  /**
+   * Processes a batch of documents.
+   * <p>
+   * 
+   * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+   */
+  private final class DocumentsTask extends RecursiveAction {
+
+    /** Generated <code>serialVersionUID</code>. */
+    private static final long serialVersionUID = -6802337129358806052L;
+
+    /** The documents to process. */
+    private final List<File> documents;
+
+    DocumentsTask(final List<File> documents) {
+      this.documents = documents;
+    }
+
+    /**
+     * @see java.util.concurrent.RecursiveAction#compute()
+     */
+    protected void compute() {
+      try {
+        for (File document : this.documents) {
+          CodepageProcessor.this.process(document);
+        }
+      } catch (Exception e) {
+        throw new ProcessingException(e);
+      }
+    }
+  }
+
+  /**
+   * Transports the checked failure of a document out of a {@link DirectoryTask} or
+   * {@link DocumentsTask}.
+   * <p>
+   * 
+   * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+   */
+  private static final class ProcessingException extends RuntimeException {
+
+    /** Generated <code>serialVersionUID</code>. */
+    private static final long serialVersionUID = -3316839226093468131L;
+
+    ProcessingException(final Exception cause) {
+      super(cause);
+    }
+  }
+
+  /**
+   * Identifies the content of a document by its length and 64 bit content hash.
+   * <p>
+   * 
+   * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+   */
+  private static final class ContentKey {
+
+    /** The length of the document. */
+    private final long length;
+
+    /** The {@link ContentHash} of the document. */
+    private final long hash;
+
+    ContentKey(final long length, final long hash) {
+      this.length = length;
+      this.hash = hash;
+    }
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    public int hashCode() {
+      return (int) (this.hash ^ (this.hash >>> 32)) * 31 + (int) this.length;
+    }
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    public boolean equals(Object obj) {
+      boolean result = false;
+      if (obj instanceof ContentKey) {
+        ContentKey other = (ContentKey) obj;
+        result = this.length == other.length && this.hash == other.hash;
+      }
+      return result;
+    }
+  }
+
+  /**
+   * The result of processing the first document with a content.
+   * <p>
+   * 
+   * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+   */
+  private static final class Original {
+
+    /** The first document with the content. */
+    private final File document;
+
+    /** The detected charset, null or unknown if the document was dropped. */
+    private final Charset charset;
+
+    /** The output written for the document, null if it was dropped. */
+    private final File target;
+
+    /**
+     * True if the output is transformed to the target codepage, false if it is a copy (or link) of
+     * the document.
+     */
+    private final boolean transformed;
+
+    Original(final File document, final Charset charset, final File target,
+        final boolean transformed) {
+      this.document = document;
+      this.charset = charset;
+      this.target = target;
+      this.transformed = transformed;
+    }
+  }
+
   /**
    * Main hook. 
    * <p> 
@@ -0,0 +1,408 @@
+/*
+ * 
+ *  ProcessingJournal.java  cpdetector
+ *  a crash-safe progress journal for CodepageProcessor.
+ *  Copyright (C) Achim Westermann, created on 17.10.2026, 19:11:05
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ * 
+ * The contents of this collection are subject to the Mozilla Public License Version 
+ * 1.1 (the "License"); you may not use this file except in compliance with 
+ * the License. You may obtain a copy of the License at 
+ * http://www.mozilla.org/MPL/
+ * 
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ * 
+ * The Original Code is the cpDetector code in [sub] packages info.monitorenter and 
+ * cpdetector. 
+ * 
+ * The Initial Developer of the Original Code is
+ * Achim Westermann <achim.westermann@gmx.de>.
+ * 
+ * Portions created by the Initial Developer are Copyright (c) 2007 
+ * the Initial Developer. All Rights Reserved.
+ * 
+ * Contributor(s):
+ * 
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ * 
+ * ***** END LICENSE BLOCK ***** * 
+ *  
+ * If you modify or optimize the code in a useful way please let me know.
+ * Achim.Westermann@gmx.de
+ */
+package info.monitorenter.cpdetector;
+
+import info.monitorenter.util.ContentHash;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>
+ * An append-only journal of the documents a {@link CodepageProcessor} run has completed, so an
+ * interrupted run may be resumed without processing the completed documents again.
+ * </p>
+ * <p>
+ * Every completed document is appended as a line <code>&lt;charset&gt;TAB&lt;path&gt;</code>
+ * (UTF-8). Newline, tab and backslash are legal in file names, so they are escaped in the path as
+ * <code>\n</code>, <code>\t</code> and <code>\\</code>. Lines are buffered and written and forced
+ * to the disk in batches: A crash loses at most the last batch (those documents are processed
+ * again) and possibly leaves a truncated last line, which is ignored and cut off when resuming.
+ * </p>
+ * <p>
+ * When resuming, the paths of the journal are kept as 64 bit hashes in an open addressing table
+ * (8 bytes per document), so {@link #isCompleted(String)} is O(1) and the index stays small for
+ * millions of documents. A hash collision (about 2<sup>-64</sup> per pair of paths) would skip a
+ * document.
+ * </p>
+ * <p>
+ * {@link #record(String, Charset)} is thread-safe, {@link #isCompleted(String)} may be called
+ * concurrently as it only reads the index loaded when resuming.
+ * </p>
+ * 
+ * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+ */
+public final class ProcessingJournal {
+
+  /** The first line of a journal. */
+  private static final String HEADER = "# cpdetector journal 1\n";
+
+  /** The amount of records that are written and forced to the disk together. */
+  public static final int BATCH = 1024;
+
+  /** The charset of the journal. */
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /** The channel appending to the journal. */
+  private final FileChannel m_channel;
+
+  /** The hashes of the paths completed by former runs. */
+  private final LongSet m_completed;
+
+  /** The records not written yet. */
+  private final StringBuilder m_pending = new StringBuilder();
+
+  /** The amount of records in {@link #m_pending}. */
+  private int m_pendingCount = 0;
+
+  /** The amount of documents recorded by this run. */
+  private long m_recorded = 0;
+
+  /**
+   * Opens the given journal.
+   * <p>
+   * 
+   * @param journal
+   *          the journal file.
+   * 
+   * @param resume
+   *          if true, the documents of an existing journal are regarded as completed and new
+   *          records are appended, else an existing journal is truncated.
+   * 
+   * @throws IOException
+   *           if the journal cannot be read or opened for writing.
+   */
+  public ProcessingJournal(final Path journal, final boolean resume) throws IOException {
+    this.m_completed = new LongSet();
+    long valid = 0;
+    if (resume && Files.exists(journal)) {
+      valid = this.load(journal);
+    }
+    this.m_channel = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    if (valid == 0) {
+      this.m_channel.truncate(0);
+      this.m_pending.append(ProcessingJournal.HEADER);
+    } else {
+      // cut off a line torn by a crash:
+      this.m_channel.truncate(valid);
+      this.m_channel.position(valid);
+    }
+  }
+
+  /**
+   * Returns true if the given document was completed by a former run.
+   * <p>
+   * 
+   * @param path
+   *          the absolute path of the document.
+   * 
+   * @return true if the given document was completed by a former run.
+   */
+  public boolean isCompleted(final String path) {
+    return this.m_completed.contains(ProcessingJournal.hash(path));
+  }
+
+  /**
+   * Returns the amount of documents completed by former runs.
+   * <p>
+   * 
+   * @return the amount of documents completed by former runs.
+   */
+  public int getCompletedCount() {
+    return this.m_completed.size();
+  }
+
+  /**
+   * Returns the amount of documents recorded by this run.
+   * <p>
+   * 
+   * @return the amount of documents recorded by this run.
+   */
+  public synchronized long getRecordedCount() {
+    return this.m_recorded;
+  }
+
+  /**
+   * Records the given document as completed.
+   * <p>
+   * 
+   * @param path
+   *          the absolute path of the document.
+   * 
+   * @param charset
+   *          the detected charset or null if none was detected.
+   * 
+   * @throws IOException
+   *           if writing the batch fails.
+   */
+  public synchronized void record(final String path, final Charset charset) throws IOException {
+    this.m_pending.append((charset == null) ? "-" : charset.name()).append('\t');
+    ProcessingJournal.escape(path, this.m_pending);
+    this.m_pending.append('\n');
+    this.m_pendingCount++;
+    this.m_recorded++;
+    if (this.m_pendingCount >= ProcessingJournal.BATCH) {
+      this.flush();
+    }
+  }
+
+  /**
+   * Writes the pending records and forces them to the disk.
+   * <p>
+   * 
+   * @throws IOException
+   *           if writing fails.
+   */
+  public synchronized void flush() throws IOException {
+    if (this.m_pending.length() > 0) {
+      ByteBuffer bytes = ProcessingJournal.UTF_8.encode(this.m_pending.toString());
+      while (bytes.hasRemaining()) {
+        this.m_channel.write(bytes);
+      }
+      this.m_pending.setLength(0);
+      this.m_pendingCount = 0;
+    }
+    this.m_channel.force(false);
+  }
+
+  /**
+   * Writes the pending records and closes the journal.
+   * <p>
+   * 
+   * @throws IOException
+   *           if writing fails.
+   */
+  public synchronized void close() throws IOException {
+    try {
+      this.flush();
+    } finally {
+      this.m_channel.close();
+    }
+  }
+
+  /**
+   * Reads the completed paths of the given journal into the index.
+   * <p>
+   * 
+   * @return the length of the valid part of the journal: up to the end of the last complete line.
+   */
+  private long load(final Path journal) throws IOException {
+    long result = 0;
+    InputStream in = Files.newInputStream(journal);
+    try {
+      byte[] buffer = new byte[65536];
+      byte[] line = new byte[256];
+      int lineLength = 0;
+      int tab = -1;
+      long position = 0;
+      int len;
+      byte b;
+      while ((len = in.read(buffer)) != -1) {
+        for (int i = 0; i < len; i++) {
+          b = buffer[i];
+          position++;
+          if (b == '\n') {
+            if (tab != -1 && line[0] != '#') {
+              int end = ProcessingJournal.unescape(line, tab + 1, lineLength);
+              this.m_completed.add(ContentHash.hash(ByteBuffer.wrap(line, tab + 1, end - tab - 1)));
+            }
+            result = position;
+            lineLength = 0;
+            tab = -1;
+          } else {
+            if (lineLength == line.length) {
+              byte[] grown = new byte[line.length << 1];
+              System.arraycopy(line, 0, grown, 0, lineLength);
+              line = grown;
+            }
+            if (b == '\t' && tab == -1) {
+              tab = lineLength;
+            }
+            line[lineLength++] = b;
+          }
+        }
+      }
+    } finally {
+      in.close();
+    }
+    return result;
+  }
+
+  /**
+   * Appends the given path to the given record with newline, tab and backslash escaped.
+   */
+  private static void escape(final String path, final StringBuilder record) {
+    char c;
+    for (int i = 0; i < path.length(); i++) {
+      c = path.charAt(i);
+      switch (c) {
+        case '\n':
+          record.append("\\n");
+          break;
+        case '\t':
+          record.append("\\t");
+          break;
+        case '\\':
+          record.append("\\\\");
+          break;
+        default:
+          record.append(c);
+      }
+    }
+  }
+
+  /**
+   * Reverts {@link #escape(String, StringBuilder)} on the UTF-8 bytes of a path in place. The
+   * escapes are ASCII, so they never occur within the encoding of another character.
+   * <p>
+   * 
+   * @return the end of the unescaped path (exclusive).
+   */
+  private static int unescape(final byte[] line, final int start, final int end) {
+    int result = start;
+    byte b;
+    for (int i = start; i < end; i++) {
+      b = line[i];
+      if (b == '\\' && i + 1 < end) {
+        b = line[++i];
+        if (b == 'n') {
+          b = '\n';
+        } else if (b == 't') {
+          b = '\t';
+        }
+      }
+      line[result++] = b;
+    }
+    return result;
+  }
+
+  /**
+   * Returns the hash of the UTF-8 bytes of the given path.
+   */
+  private static long hash(final String path) {
+    return ContentHash.hash(ProcessingJournal.UTF_8.encode(path));
+  }
+
+  /**
+   * A set of long values with open addressing and linear probing.
+   * <p>
+   * 
+   * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+   */
+  private static final class LongSet {
+
+    /** The slots, 0 marks a free slot (0 itself is stored as 1). */
+    private long[] m_slots = new long[1024];
+
+    /** The amount of values. */
+    private int m_size = 0;
+
+    int size() {
+      return this.m_size;
+    }
+
+    boolean contains(final long value) {
+      long key = (value == 0) ? 1 : value;
+      int mask = this.m_slots.length - 1;
+      int i = LongSet.slot(key, mask);
+      boolean result = false;
+      while (this.m_slots[i] != 0) {
+        if (this.m_slots[i] == key) {
+          result = true;
+          break;
+        }
+        i = (i + 1) & mask;
+      }
+      return result;
+    }
+
+    void add(final long value) {
+      long key = (value == 0) ? 1 : value;
+      if (this.insert(this.m_slots, key)) {
+        this.m_size++;
+        // keep the load factor below 1/2:
+        if (this.m_size << 1 > this.m_slots.length) {
+          long[] grown = new long[this.m_slots.length << 1];
+          for (int i = 0; i < this.m_slots.length; i++) {
+            if (this.m_slots[i] != 0) {
+              this.insert(grown, this.m_slots[i]);
+            }
+          }
+          this.m_slots = grown;
+        }
+      }
+    }
+
+    private boolean insert(final long[] slots, final long key) {
+      int mask = slots.length - 1;
+      int i = LongSet.slot(key, mask);
+      boolean result = true;
+      while (slots[i] != 0) {
+        if (slots[i] == key) {
+          result = false;
+          break;
+        }
+        i = (i + 1) & mask;
+      }
+      if (result) {
+        slots[i] = key;
+      }
+      return result;
+    }
+
+    private static int slot(final long key, final int mask) {
+      return (int) (key ^ (key >>> 32)) & mask;
+    }
+  }
+}
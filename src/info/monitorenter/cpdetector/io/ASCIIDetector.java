@@ -49,9 +49,9 @@ package info.monitorenter.cpdetector.io;
 
 import info.monitorenter.util.FileUtil;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
 
@@ -93,6 +93,9 @@ public final class ASCIIDetector
 
   private static ICodepageDetector instance;
 
+  /** The charset reported for documents that only contain ASCII bytes. */
+  private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
   /**
    * Singleton constructor
    */
@@ -109,22 +112,84 @@ public final class ASCIIDetector
   }
 
   /**
+   * Tests the first <code>length</code> bytes of the given stream in chunks
+   * (see {@link FileUtil#isAllASCII(InputStream, int)}).
+   * <p>
+   * 
    * @see info.monitorenter.cpdetector.io.ICodepageDetector#detectCodepage(java.io.InputStream,
    *      int)
    */
   public Charset detectCodepage(final InputStream in, final int length) throws IOException {
     Charset ret = UnknownCharset.getInstance();
-    InputStream localin;
-    if (!(in instanceof BufferedInputStream)) {
-      localin = new BufferedInputStream(in, 4096);
-    } else {
-      localin = in;
+    if (FileUtil.isAllASCII(in, length)) {
+      ret = ASCIIDetector.US_ASCII;
     }
-    if (FileUtil.isAllASCII(localin)) {
-      ret = Charset.forName("US-ASCII");
+    return ret;
+  }
+
+  /**
+   * Scans the remaining bytes of the given buffer in place.
+   * <p>
+   * 
+   * @see info.monitorenter.cpdetector.io.ICodepageDetector#detectCodepage(java.nio.ByteBuffer)
+   */
+  public Charset detectCodepage(final ByteBuffer buffer) throws IOException {
+    Charset ret = UnknownCharset.getInstance();
+    if (FileUtil.isAllASCII(buffer)) {
+      ret = ASCIIDetector.US_ASCII;
     }
     return ret;
+  }
 
+  /**
+   * Returns a session that scans the chunks as they are fed: It is done at
+   * the first non - ASCII byte.
+   * <p>
+   * 
+   * @see info.monitorenter.cpdetector.io.ICodepageDetector#newSession()
+   */
+  public IDetectionSession newSession() {
+    return new Session(this.getSamplingStrategy().getBudget());
   }
 
+  /**
+   * Scans the fed chunks until a non - ASCII byte occurs.
+   * <p>
+   * 
+   * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+   */
+  private final class Session extends AbstractDetectionSession {
+
+    /** False as soon as a non - ASCII byte was fed. */
+    private boolean m_ascii = true;
+
+    Session(final int budget) {
+      super(budget);
+    }
+
+    /**
+     * @see info.monitorenter.cpdetector.io.AbstractDetectionSession#update(java.nio.ByteBuffer)
+     */
+    protected void update(final ByteBuffer chunk) {
+      this.m_ascii = FileUtil.isAllASCII(chunk);
+    }
+
+    /**
+     * @see info.monitorenter.cpdetector.io.AbstractDetectionSession#isDecided()
+     */
+    protected boolean isDecided() {
+      return !this.m_ascii;
+    }
+
+    /**
+     * @see info.monitorenter.cpdetector.io.AbstractDetectionSession#result()
+     */
+    protected DetectionResult result() {
+      Charset charset = UnknownCharset.getInstance();
+      if (this.m_ascii) {
+        charset = ASCIIDetector.US_ASCII;
+      }
+      return DetectionResult.valueOf(charset, this.getConsumed(), ASCIIDetector.this);
+    }
+  }
 }
@@ -49,12 +49,34 @@
  */
 package info.monitorenter.cpdetector.io;
 
+import info.monitorenter.io.ByteBufferInputStream;
+
 import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <p>
@@ -70,40 +92,409 @@ import java.nio.charset.Charset;
  * 
  */
 public abstract class AbstractCodepageDetector implements ICodepageDetector {
+
+    /** The initial size of a detection window read from a stream, grown on demand. */
+    private static final int INITIAL_WINDOW = 8192;
+
+    /** The sampling strategy all detectors use unless configured otherwise. */
+    private static final ISamplingStrategy DEFAULT_SAMPLING = new HeadSamplingStrategy();
+
     /**
-     * 
+     * Decides which bytes of documents given by {@link #detectCodepage(URL)} and {@link #detectCodepage(Path)} are
+     * taken into account.
+     */
+    private volatile ISamplingStrategy m_samplingStrategy;
+
+    /** The executor of the asynchronous detections, null for the default one. */
+    private transient volatile Executor m_asyncExecutor;
+
+    /**
+     * Creates an instance with the default sampling strategy (the first {@link ISamplingStrategy#DEFAULT_BUDGET}
+     * bytes).
      */
     public AbstractCodepageDetector() {
+        this(DEFAULT_SAMPLING);
+    }
+
+    /**
+     * Creates an instance with the given sampling strategy.
+     * <p>
+     * 
+     * @param samplingStrategy
+     *            decides which bytes of documents are taken into account.
+     */
+    protected AbstractCodepageDetector(final ISamplingStrategy samplingStrategy) {
         super();
+        this.m_samplingStrategy = samplingStrategy;
+    }
+
+    /**
+     * Returns the strategy that decides which bytes of documents given by {@link #detectCodepage(URL)} and
+     * {@link #detectCodepage(Path)} are taken into account.
+     * <p>
+     * 
+     * @return the strategy that decides which bytes of documents are taken into account.
+     */
+    public ISamplingStrategy getSamplingStrategy() {
+        return this.m_samplingStrategy;
+    }
+
+    /**
+     * Sets the strategy that decides which bytes of documents given by {@link #detectCodepage(URL)} and
+     * {@link #detectCodepage(Path)} are taken into account.
+     * <p>
+     * Documents given by {@link #detectCodepage(java.io.InputStream, int)} and {@link #detectCodepage(ByteBuffer)} are
+     * taken into account as given.
+     * <p>
+     * Protected as not every detector is mutable: Subclasses that are (like {@link CodepageDetectorProxy}) may widen
+     * the access, immutable ones (like {@link CodepageDetectorChain}) take their strategy when constructed.
+     * <p>
+     * 
+     * @param samplingStrategy
+     *            decides which bytes of documents are taken into account.
+     * 
+     * @throws IllegalArgumentException
+     *             if the argument is null.
+     */
+    protected void setSamplingStrategy(final ISamplingStrategy samplingStrategy) throws IllegalArgumentException {
+        if (samplingStrategy == null) {
+            throw new IllegalArgumentException("Argument samplingStrategy must not be null.");
+        }
+        this.m_samplingStrategy = samplingStrategy;
     }
 
     /**
-     * Delegates to {@link #detectCodepage(java.io.InputStream, int)} with a buffered input stream.
+     * Returns the executor that runs the detections started by {@link #detectCodepageAsync(URL)} and
+     * {@link #detectCodepageAsync(java.io.InputStream, int)}.
+     * <p>
+     * 
+     * @return the executor of the asynchronous detections.
+     * 
+     * @see #getDefaultAsyncExecutor()
+     */
+    public Executor getAsyncExecutor() {
+        Executor ret = this.m_asyncExecutor;
+        if (ret == null) {
+            ret = AbstractCodepageDetector.getDefaultAsyncExecutor();
+        }
+        return ret;
+    }
+
+    /**
+     * Sets the executor that runs the detections started by {@link #detectCodepageAsync(URL)} and
+     * {@link #detectCodepageAsync(java.io.InputStream, int)}.
+     * <p>
+     * The executor is not serialized: Deserialized detectors use the default one.
+     * <p>
+     * 
+     * @param executor
+     *            the executor of the asynchronous detections.
+     * 
+     * @throws IllegalArgumentException
+     *             if the argument is null.
+     */
+    public void setAsyncExecutor(final Executor executor) throws IllegalArgumentException {
+        if (executor == null) {
+            throw new IllegalArgumentException("Argument executor must not be null.");
+        }
+        this.m_asyncExecutor = executor;
+    }
+
+    /**
+     * Returns the executor that runs asynchronous detections unless configured otherwise.
+     * <p>
+     * On a JDK that offers virtual threads (21 and above) this starts a new virtual thread per detection: Blocking
+     * reads of tens of thousands of documents in flight are cheap then. On older JDKs this is a fixed pool of daemon
+     * threads (four per processor, at least eight) that queues the detections exceeding it; idle threads terminate
+     * after a minute.
+     * <p>
+     * 
+     * @return the shared default executor of asynchronous detections.
+     */
+    public static Executor getDefaultAsyncExecutor() {
+        return DefaultAsyncExecutor.INSTANCE;
+    }
+
+    /**
+     * Delegates to {@link #detectCodepage(Path)} for <code>file:</code> URLs. Other URLs cannot be sampled randomly:
+     * This delegates to {@link #detectCodepage(java.io.InputStream, int)} with a buffered input stream and the budget
+     * of the sampling strategy.
      * <p>
      * 
      * @see ICodepageDetector#detectCodepage(URL)
      */
     public Charset detectCodepage(final URL url) throws IOException {
         Charset result;
-        BufferedInputStream in = new BufferedInputStream(url.openStream());
-        result = this.detectCodepage(in, Integer.MAX_VALUE);
-        in.close();
+        Path path = AbstractCodepageDetector.toPath(url);
+        if (path != null) {
+            result = this.detectCodepage(path);
+        } else {
+            BufferedInputStream in = new BufferedInputStream(url.openStream());
+            try {
+                result = this.detectCodepage(in, this.m_samplingStrategy.getBudget());
+            } finally {
+                in.close();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the local file of the given URL or null if it does not point to a local file (or contains illegal
+     * characters like URLs returned from {@link java.io.File#toURL()}).
+     * <p>
+     * 
+     * @param url
+     *            the URL to transform.
+     * 
+     * @return the local file of the given URL or null.
+     */
+    static Path toPath(final URL url) {
+        Path result = null;
+        if ("file".equalsIgnoreCase(url.getProtocol())) {
+            try {
+                result = Paths.get(url.toURI());
+            } catch (URISyntaxException e) {
+                // fall back to streaming
+            } catch (IllegalArgumentException e) {
+                // e.g. an authority component: fall back to streaming
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Delegates to {@link #detectCodepage(java.io.InputStream, int)} with an input stream that reads the remaining
+     * bytes of the given buffer in place.
+     * <p>
+     * Subclasses that are able to work on the buffer directly should override this bridge.
+     * <p>
+     * 
+     * @see ICodepageDetector#detectCodepage(ByteBuffer)
+     */
+    public Charset detectCodepage(final ByteBuffer buffer) throws IOException {
+        return this.detectCodepage(new ByteBufferInputStream(buffer), buffer.remaining());
+    }
+
+    /**
+     * Delegates to {@link #detectCodepage(ByteBuffer)} with the sample the sampling strategy picks from the given file
+     * (see {@link #sample(Path)}).
+     * <p>
+     * 
+     * @see ICodepageDetector#detectCodepage(Path)
+     */
+    public Charset detectCodepage(final Path path) throws IOException {
+        return this.detectCodepage(this.sample(path));
+    }
+
+    /**
+     * Delegates to {@link #detectCodepage(ByteBuffer)} with the sample the sampling strategy picks from the given
+     * complete document.
+     * <p>
+     * This is for callers that hold the whole document in memory anyway (e.g. mapped to transform it after detection)
+     * and want to detect it like {@link #detectCodepage(Path)} without opening it again.
+     * <p>
+     * 
+     * @param document
+     *            the complete document from position to limit, it is not modified.
+     * 
+     * @return the charset of the document or {@link UnknownCharset}.
+     * 
+     * @throws IOException
+     *             if the detection fails.
+     */
+    public Charset detectDocument(final ByteBuffer document) throws IOException {
+        return this.detectCodepage(this.getSamplingStrategy().sample(document));
+    }
+
+    /**
+     * Reports the result of {@link #detectCodepage(ByteBuffer)} with full confidence if a supported charset was
+     * detected and no confidence else.
+     * <p>
+     * Subclasses that are able to judge their confidence should override.
+     * <p>
+     * 
+     * @see ICodepageDetector#detect(ByteBuffer)
+     */
+    public DetectionResult detect(final ByteBuffer buffer) throws IOException {
+        return DetectionResult.valueOf(this.detectCodepage(buffer), buffer.remaining(), this);
+    }
+
+    /**
+     * Delegates to {@link #detect(ByteBuffer)} with the sample the sampling strategy picks from the given file (see
+     * {@link #sample(Path)}).
+     * <p>
+     * 
+     * @param path
+     *            the file to detect.
+     * 
+     * @return the detection result, never null.
+     * 
+     * @throws IOException
+     *             if it was not possible to open the given file.
+     */
+    public DetectionResult detect(final Path path) throws IOException {
+        return this.detect(this.sample(path));
+    }
+
+    /**
+     * Memory - maps the given file read - only and returns the sample the sampling strategy picks from the mapped
+     * region.
+     * <p>
+     * Files that are larger than {@link Integer#MAX_VALUE} bytes are mapped up to that size. If the file system of
+     * the path does not support mapping (e.g. a zip file system) the head of the file is read into a heap buffer
+     * instead.
+     * <p>
+     * Note that the mapping is released by the garbage collector: Until then some platforms (Windows) prevent the file
+     * from being deleted.
+     * <p>
+     * 
+     * @param path
+     *            the file to sample.
+     * 
+     * @return the sample of the file.
+     * 
+     * @throws IOException
+     *             if it was not possible to open the given file.
+     */
+    protected ByteBuffer sample(final Path path) throws IOException {
+        ByteBuffer result;
+        ISamplingStrategy sampling = this.getSamplingStrategy();
+        FileChannel channel = null;
+        MappedByteBuffer mapped = null;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), Integer.MAX_VALUE));
+        } catch (UnsupportedOperationException uoe) {
+            // fall back to streaming below
+        } finally {
+            if (channel != null) {
+                // the mapping stays valid:
+                channel.close();
+            }
+        }
+        if (mapped != null) {
+            result = sampling.sample(mapped);
+        } else {
+            InputStream in = Files.newInputStream(path);
+            try {
+                result = AbstractCodepageDetector.readWindow(in, sampling.getBudget());
+            } finally {
+                in.close();
+            }
+        }
         return result;
+    }
+
+    /**
+     * Reads up to <code>length</code> bytes from the given stream into a
+     * buffer that only grows as far as data is available.
+     * <p>
+     * 
+     * @param in
+     *            the stream to read from.
+     * 
+     * @param length
+     *            the maximum amount of bytes to read.
+     * 
+     * @return a heap buffer with position 0 and the limit set to the amount of
+     *         bytes read.
+     * 
+     * @throws IOException
+     *             if reading from the stream fails.
+     */
+    static ByteBuffer readWindow(final InputStream in, final int length) throws IOException {
+        byte[] data = new byte[Math.max(0, Math.min(length, AbstractCodepageDetector.INITIAL_WINDOW))];
+        int size = 0;
+        int read = 0;
+        while (size < length && read != -1) {
+            if (size == data.length) {
+                byte[] grown = new byte[(int) Math.min(length, 2L * data.length)];
+                System.arraycopy(data, 0, grown, 0, size);
+                data = grown;
+            }
+            read = in.read(data, size, data.length - size);
+            if (read > 0) {
+                size += read;
+            }
+        }
+        return ByteBuffer.wrap(data, 0, size);
+    }
 
+    /**
+     * Returns a session that buffers the fed bytes up to the budget of the sampling strategy and detects them with
+     * {@link #detect(ByteBuffer)} when finished.
+     * <p>
+     * Subclasses that are able to detect incrementally should override.
+     * <p>
+     * 
+     * @see ICodepageDetector#newSession()
+     */
+    public IDetectionSession newSession() {
+        return new BufferingSession(this, this.getSamplingStrategy().getBudget());
     }
 
     /**
-     * A default delegation to {@link #detectCodepage(URL)}that opens the document specified by the given URL with the
-     * detected codepage.
+     * Runs {@link #detectCodepage(URL)} on the executor of this detector.
+     * <p>
+     * 
+     * @see ICodepageDetector#detectCodepageAsync(URL)
+     */
+    public CompletableFuture<Charset> detectCodepageAsync(final URL url) {
+        return AbstractCodepageDetector.submit(this.getAsyncExecutor(), new AsyncDetection(this, url, null, 0));
+    }
+
+    /**
+     * Runs {@link #detectCodepage(InputStream, int)} on the executor of this detector.
+     * <p>
+     * 
+     * @see ICodepageDetector#detectCodepageAsync(InputStream, int)
+     */
+    public CompletableFuture<Charset> detectCodepageAsync(final InputStream in, final int length) {
+        return AbstractCodepageDetector.submit(this.getAsyncExecutor(), new AsyncDetection(this, null, in, length));
+    }
+
+    /**
+     * Hands the given detection to the given executor.
+     * <p>
+     * 
+     * @param executor
+     *            the executor to run the detection on.
+     * 
+     * @param detection
+     *            the detection to run.
+     * 
+     * @return the future of the detection, completed exceptionally if the executor rejects it.
+     */
+    static CompletableFuture<Charset> submit(final Executor executor, final AsyncDetection detection) {
+        try {
+            executor.execute(detection);
+        } catch (RejectedExecutionException e) {
+            detection.m_future.completeExceptionally(e);
+        }
+        return detection.m_future;
+    }
+
+    /**
+     * Opens the document specified by the given URL with the detected codepage.
+     * <p>
+     * Local files are detected like {@link #detectCodepage(URL)} (by the sample the sampling strategy picks) and then
+     * opened. Other URLs are fetched only once: The head that the sampling strategy allows is buffered and detected
+     * and then replayed by the returned {@link DetectingReader} followed by the rest of the same connection.
      * <p>
      * 
      * @see info.monitorenter.cpdetector.io.ICodepageDetector#open(java.net.URL)
      */
     public final Reader open(final URL url) throws IOException {
         Reader ret = null;
-        Charset cs = this.detectCodepage(url);
-        if (cs != null) {
-            ret = new InputStreamReader(new BufferedInputStream(url.openStream()), cs);
+        Path path = AbstractCodepageDetector.toPath(url);
+        if (path != null) {
+            Charset cs = this.detectCodepage(path);
+            if (DetectionResult.isDetected(cs)) {
+                ret = new InputStreamReader(new BufferedInputStream(Files.newInputStream(path)), cs);
+            }
+        } else {
+            ret = DetectingReader.open(url.openStream(), this, this.getSamplingStrategy().getBudget());
         }
         return ret;
     }
@@ -116,4 +507,169 @@ public abstract class AbstractCodepageDetector implements ICodepageDetector {
         String mine = this.getClass().getName();
         return mine.compareTo(other);
     }
+
+    /**
+     * A detection run by the asynchronous executor.
+     * <p>
+     * 
+     * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+     */
+    static final class AsyncDetection implements Runnable {
+
+        /** The detector to ask. */
+        private final ICodepageDetector m_detector;
+
+        /** The document to detect or null if the stream is detected. */
+        private final URL m_url;
+
+        /** The stream to detect if the URL is null. */
+        private final InputStream m_in;
+
+        /** The amount of bytes of the stream to take into account. */
+        private final int m_length;
+
+        /** The result of this detection. */
+        final CompletableFuture<Charset> m_future = new CompletableFuture<Charset>();
+
+        AsyncDetection(final ICodepageDetector detector, final URL url, final InputStream in, final int length) {
+            this.m_detector = detector;
+            this.m_url = url;
+            this.m_in = in;
+            this.m_length = length;
+        }
+
+        /**
+         * @see java.lang.Runnable#run()
+         */
+        public void run() {
+            if (!this.m_future.isDone()) {
+                try {
+                    if (this.m_url != null) {
+                        this.m_future.complete(this.m_detector.detectCodepage(this.m_url));
+                    } else {
+                        this.m_future.complete(this.m_detector.detectCodepage(this.m_in, this.m_length));
+                    }
+                } catch (Throwable t) {
+                    this.m_future.completeExceptionally(t);
+                }
+            }
+        }
+    }
+
+    /**
+     * Holds the default executor of asynchronous detections, created on first use.
+     * <p>
+     * 
+     * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+     */
+    private static final class DefaultAsyncExecutor implements ThreadFactory {
+
+        /** The default executor of asynchronous detections. */
+        static final Executor INSTANCE = DefaultAsyncExecutor.create();
+
+        /** The amount of threads of the fallback pool per processor. */
+        private static final int THREADS_PER_PROCESSOR = 4;
+
+        /** The minimum amount of threads of the fallback pool. */
+        private static final int MIN_THREADS = 8;
+
+        /** Counts the threads created by the fallback pool. */
+        private final AtomicInteger m_threads = new AtomicInteger();
+
+        /**
+         * Returns a virtual thread per task executor if the running JDK offers one (looked up by reflection as this
+         * library is built for older JDKs) or a bounded pool of daemon threads with an unbounded queue.
+         * <p>
+         * 
+         * @return the default executor of asynchronous detections.
+         */
+        private static Executor create() {
+            Executor ret = null;
+            try {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                ret = (Executor) factory.invoke(null);
+            } catch (NoSuchMethodException e) {
+                // JDK without virtual threads
+            } catch (IllegalAccessException e) {
+                // fall back to platform threads
+            } catch (InvocationTargetException e) {
+                // preview feature not enabled
+            }
+            if (ret == null) {
+                int threads = Math.max(MIN_THREADS, THREADS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors());
+                ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<Runnable>(), new DefaultAsyncExecutor());
+                pool.allowCoreThreadTimeOut(true);
+                ret = pool;
+            }
+            return ret;
+        }
+
+        /**
+         * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+         */
+        public Thread newThread(final Runnable r) {
+            Thread ret = new Thread(r, "cpdetector-async-" + this.m_threads.incrementAndGet());
+            ret.setDaemon(true);
+            return ret;
+        }
+    }
+
+    /**
+     * A session that buffers the fed bytes (growing as far as bytes are fed, up to a budget) and detects them when
+     * finished.
+     * <p>
+     * 
+     * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+     */
+    static final class BufferingSession extends AbstractDetectionSession {
+
+        /** The detector for the buffered bytes. */
+        private final ICodepageDetector m_detector;
+
+        /** The maximum amount of bytes to buffer. */
+        private final int m_budget;
+
+        /** The buffered bytes. */
+        private byte[] m_data;
+
+        /**
+         * Creates a session.
+         * <p>
+         * 
+         * @param detector
+         *            the detector for the buffered bytes.
+         * 
+         * @param budget
+         *            the maximum amount of bytes to buffer.
+         */
+        BufferingSession(final ICodepageDetector detector, final int budget) {
+            super(budget);
+            this.m_detector = detector;
+            this.m_budget = budget;
+            this.m_data = new byte[Math.max(0, Math.min(budget, AbstractCodepageDetector.INITIAL_WINDOW))];
+        }
+
+        /**
+         * @see info.monitorenter.cpdetector.io.AbstractDetectionSession#update(java.nio.ByteBuffer)
+         */
+        protected void update(final ByteBuffer chunk) {
+            // the base class already counts the chunk:
+            int size = this.getConsumed() - chunk.remaining();
+            int required = this.getConsumed();
+            if (required > this.m_data.length) {
+                byte[] grown = new byte[Math.max(required, (int) Math.min(this.m_budget, 2L * this.m_data.length))];
+                System.arraycopy(this.m_data, 0, grown, 0, size);
+                this.m_data = grown;
+            }
+            chunk.get(this.m_data, size, chunk.remaining());
+        }
+
+        /**
+         * @see info.monitorenter.cpdetector.io.AbstractDetectionSession#result()
+         */
+        protected DetectionResult result() throws IOException {
+            return this.m_detector.detect(ByteBuffer.wrap(this.m_data, 0, this.getConsumed()));
+        }
+    }
 }
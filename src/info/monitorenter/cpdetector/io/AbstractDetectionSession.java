@@ -0,0 +1,176 @@
+/*
+ * 
+ *  AbstractDetectionSession.java  cpdetector
+ *  a base for detection sessions with a budget.
+ *  Copyright (C) Achim Westermann, created on 18.10.2026, 11:20:13
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ * 
+ * The contents of this collection are subject to the Mozilla Public License Version 
+ * 1.1 (the "License"); you may not use this file except in compliance with 
+ * the License. You may obtain a copy of the License at 
+ * http://www.mozilla.org/MPL/
+ * 
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ * 
+ * The Original Code is the cpDetector code in [sub] packages info.monitorenter and 
+ * cpdetector. 
+ * 
+ * The Initial Developer of the Original Code is
+ * Achim Westermann <achim.westermann@gmx.de>.
+ * 
+ * Portions created by the Initial Developer are Copyright (c) 2007 
+ * the Initial Developer. All Rights Reserved.
+ * 
+ * Contributor(s):
+ * 
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ * 
+ * ***** END LICENSE BLOCK ***** * 
+ *  
+ * If you modify or optimize the code in a useful way please let me know.
+ * Achim.Westermann@gmx.de
+ */
+package info.monitorenter.cpdetector.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * A base for {@link IDetectionSession} implementations that cuts the fed
+ * bytes to the budget of the detection, drops bytes fed when the session is
+ * done and remembers the result.
+ * </p>
+ * <p>
+ * Subclasses only see the bytes within the budget ({@link #update(ByteBuffer)}),
+ * may decide early ({@link #isDecided()}) and compute the result once
+ * ({@link #result()}).
+ * </p>
+ * 
+ * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+ */
+public abstract class AbstractDetectionSession implements IDetectionSession {
+
+  /** The maximum amount of bytes that are taken into account. */
+  private final int m_budget;
+
+  /** The amount of bytes taken into account. */
+  private int m_consumed = 0;
+
+  /** The result, null until {@link #finish()}. */
+  private DetectionResult m_result = null;
+
+  /**
+   * Creates a session.
+   * <p>
+   * 
+   * @param budget
+   *          the maximum amount of bytes that are taken into account.
+   */
+  protected AbstractDetectionSession(final int budget) {
+    this.m_budget = Math.max(0, budget);
+  }
+
+  /**
+   * @see info.monitorenter.cpdetector.io.IDetectionSession#feed(byte[], int,
+   *      int)
+   */
+  public final void feed(final byte[] chunk, final int offset, final int length) throws IOException,
+      IllegalStateException {
+    this.feed(ByteBuffer.wrap(chunk, offset, length));
+  }
+
+  /**
+   * @see info.monitorenter.cpdetector.io.IDetectionSession#feed(java.nio.ByteBuffer)
+   */
+  public final void feed(final ByteBuffer chunk) throws IOException, IllegalStateException {
+    if (this.m_result != null) {
+      throw new IllegalStateException("The session is finished.");
+    }
+    if (!this.isDone()) {
+      int length = Math.min(chunk.remaining(), this.m_budget - this.m_consumed);
+      ByteBuffer taken = chunk.duplicate();
+      taken.limit(taken.position() + length);
+      this.m_consumed += length;
+      this.update(taken);
+    }
+    chunk.position(chunk.limit());
+  }
+
+  /**
+   * @see info.monitorenter.cpdetector.io.IDetectionSession#isDone()
+   */
+  public final boolean isDone() {
+    return this.m_result != null || this.m_consumed >= this.m_budget || this.isDecided();
+  }
+
+  /**
+   * @see info.monitorenter.cpdetector.io.IDetectionSession#finish()
+   */
+  public final DetectionResult finish() throws IOException {
+    if (this.m_result == null) {
+      this.m_result = this.result();
+    }
+    return this.m_result;
+  }
+
+  /**
+   * Returns the amount of bytes taken into account so far.
+   * <p>
+   * 
+   * @return the amount of bytes taken into account so far.
+   */
+  protected final int getConsumed() {
+    return this.m_consumed;
+  }
+
+  /**
+   * Processes the next bytes of the document within the budget.
+   * <p>
+   * 
+   * @param chunk
+   *          the next bytes from position to limit, the buffer may be consumed
+   *          but not retained.
+   * 
+   * @throws IOException
+   *           if the detection fails.
+   */
+  protected abstract void update(ByteBuffer chunk) throws IOException;
+
+  /**
+   * Returns true if the result is decided before the budget is consumed. This
+   * default returns false.
+   * <p>
+   * 
+   * @return true if the result is decided before the budget is consumed.
+   */
+  protected boolean isDecided() {
+    return false;
+  }
+
+  /**
+   * Computes the result from the bytes taken into account. Called once.
+   * <p>
+   * 
+   * @return the result, never null.
+   * 
+   * @throws IOException
+   *           if the detection fails.
+   */
+  protected abstract DetectionResult result() throws IOException;
+}
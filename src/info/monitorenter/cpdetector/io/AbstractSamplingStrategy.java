@@ -0,0 +1,242 @@
+/*
+ * 
+ *  AbstractSamplingStrategy.java  cpdetector
+ *  base class for sampling strategies.
+ *  Copyright (C) Achim Westermann, created on 17.10.2026, 11:24:47
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ * 
+ * The contents of this collection are subject to the Mozilla Public License Version 
+ * 1.1 (the "License"); you may not use this file except in compliance with 
+ * the License. You may obtain a copy of the License at 
+ * http://www.mozilla.org/MPL/
+ * 
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ * 
+ * The Original Code is the cpDetector code in [sub] packages info.monitorenter and 
+ * cpdetector. 
+ * 
+ * The Initial Developer of the Original Code is
+ * Achim Westermann <achim.westermann@gmx.de>.
+ * 
+ * Portions created by the Initial Developer are Copyright (c) 2007 
+ * the Initial Developer. All Rights Reserved.
+ * 
+ * Contributor(s):
+ * 
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ * 
+ * ***** END LICENSE BLOCK ***** * 
+ *  
+ * If you modify or optimize the code in a useful way please let me know.
+ * Achim.Westermann@gmx.de
+ */
+package info.monitorenter.cpdetector.io;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Base class for {@link ISamplingStrategy} implementations that holds the
+ * budget.
+ * <p>
+ * Documents that fit into the budget are returned as a view without any copy.
+ * Larger documents are handed to {@link #sampleLarge(ByteBuffer)}.
+ * <p>
+ * 
+ * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+ */
+public abstract class AbstractSamplingStrategy implements ISamplingStrategy {
+
+  /** Generated <code>serialVersionUID</code>. */
+  private static final long serialVersionUID = -3214520788127345618L;
+
+  /**
+   * The alignment of the regions of a sample in bytes: The size of a UTF-32
+   * code unit, a multiple of the size of a UTF-16 code unit.
+   */
+  private static final int ALIGNMENT = 4;
+
+  /** The maximum amount of bytes of a sample. */
+  private final int m_budget;
+
+  /**
+   * Creates an instance with the given budget.
+   * <p>
+   * 
+   * @param budget
+   *          the maximum amount of bytes of a sample.
+   * 
+   * @throws IllegalArgumentException
+   *           if the given budget is not positive.
+   */
+  protected AbstractSamplingStrategy(final int budget) throws IllegalArgumentException {
+    super();
+    if (budget <= 0) {
+      throw new IllegalArgumentException("Budget has to be positive: " + budget);
+    }
+    this.m_budget = budget;
+  }
+
+  /**
+   * @see info.monitorenter.cpdetector.io.ISamplingStrategy#getBudget()
+   */
+  public final int getBudget() {
+    return this.m_budget;
+  }
+
+  /**
+   * Returns a view of the given document if it fits into the budget or
+   * delegates to {@link #sampleLarge(ByteBuffer)}.
+   * <p>
+   * 
+   * @see info.monitorenter.cpdetector.io.ISamplingStrategy#sample(java.nio.ByteBuffer)
+   */
+  public final ByteBuffer sample(final ByteBuffer document) {
+    ByteBuffer result;
+    if (document.remaining() <= this.m_budget) {
+      result = document.duplicate();
+    } else {
+      result = this.sampleLarge(document);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the sample of a document that is larger than the budget.
+   * <p>
+   * 
+   * @param document
+   *          the document, more than {@link #getBudget()} bytes remaining. Must
+   *          not be modified.
+   * 
+   * @return a sample with at most {@link #getBudget()} remaining bytes.
+   */
+  protected abstract ByteBuffer sampleLarge(ByteBuffer document);
+
+  /**
+   * Copies the given regions of the document into a new heap buffer.
+   * <p>
+   * Offsets and lengths are rounded down to multiples of 4 bytes, so every
+   * region keeps the alignment of the code units of BOM - less UTF-16 and
+   * UTF-32 documents. UTF-8 continuation bytes at the start of a region that
+   * does not start at the beginning of the document and an incomplete UTF-8
+   * sequence at the end of a region that does not end at the end of the
+   * document are replaced by spaces. So the joints of the sample do not
+   * introduce sequences that are illegal in UTF-8 and the alignment is kept
+   * (dropping them would shift the following code units). At most 3 bytes per
+   * side are replaced.
+   * <p>
+   * 
+   * @param document
+   *          the document.
+   * 
+   * @param offsets
+   *          the start of each region, relative to the position of the
+   *          document, ascending and not overlapping.
+   * 
+   * @param lengths
+   *          the length of each region.
+   * 
+   * @return a heap buffer containing the regions in the given order.
+   */
+  protected static ByteBuffer gather(final ByteBuffer document, final int[] offsets,
+      final int[] lengths) {
+    int base = document.position();
+    int total = document.remaining();
+    int size = 0;
+    for (int i = 0; i < lengths.length; i++) {
+      size += lengths[i];
+    }
+    byte[] sample = new byte[size];
+    ByteBuffer region = document.duplicate();
+    int written = 0;
+    int start;
+    int end;
+    int first;
+    int last;
+    for (int i = 0; i < offsets.length; i++) {
+      start = base + AbstractSamplingStrategy.align(offsets[i]);
+      end = start + AbstractSamplingStrategy.align(lengths[i]);
+      region.limit(end);
+      region.position(start);
+      region.get(sample, written, end - start);
+      first = start;
+      if (start > base) {
+        for (int skip = 0; skip < 3 && first < end && (document.get(first) & 0xC0) == 0x80; skip++) {
+          first++;
+        }
+      }
+      last = end;
+      if (end - base < total) {
+        last = Math.max(first, AbstractSamplingStrategy.cutIncompleteSequence(document, first, end));
+      }
+      Arrays.fill(sample, written, written + first - start, (byte) ' ');
+      Arrays.fill(sample, written + last - start, written + end - start, (byte) ' ');
+      written += end - start;
+    }
+    return ByteBuffer.wrap(sample, 0, written);
+  }
+
+  /**
+   * Rounds the given amount of bytes down to a multiple of the alignment.
+   */
+  private static int align(final int bytes) {
+    return bytes - bytes % ALIGNMENT;
+  }
+
+  /**
+   * Returns the end of the given region without a trailing UTF-8 multi-byte
+   * sequence that would be continued behind the region.
+   * <p>
+   * 
+   * @param document
+   *          the document.
+   * 
+   * @param start
+   *          the absolute start index of the region.
+   * 
+   * @param end
+   *          the absolute end index (exclusive) of the region.
+   * 
+   * @return the end index without a trailing incomplete sequence.
+   */
+  private static int cutIncompleteSequence(final ByteBuffer document, final int start, final int end) {
+    int result = end;
+    int lead;
+    int expected;
+    for (int i = end - 1; i >= start && i >= end - 3; i--) {
+      lead = document.get(i) & 0xFF;
+      if ((lead & 0xC0) != 0x80) {
+        if (lead >= 0xF0) {
+          expected = 4;
+        } else if (lead >= 0xE0) {
+          expected = 3;
+        } else if (lead >= 0xC0) {
+          expected = 2;
+        } else {
+          expected = 1;
+        }
+        if (i + expected > end) {
+          result = i;
+        }
+        break;
+      }
+    }
+    return result;
+  }
+}
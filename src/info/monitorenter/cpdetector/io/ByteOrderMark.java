@@ -0,0 +1,322 @@
+/*
+ * 
+ *  ByteOrderMark.java  cpdetector
+ *  the byte order marks (signatures) of the Unicode encodings.
+ *  Copyright (C) Achim Westermann, created on 17.10.2026, 16:10:05
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ * 
+ * The contents of this collection are subject to the Mozilla Public License Version 
+ * 1.1 (the "License"); you may not use this file except in compliance with 
+ * the License. You may obtain a copy of the License at 
+ * http://www.mozilla.org/MPL/
+ * 
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ * 
+ * The Original Code is the cpDetector code in [sub] packages info.monitorenter and 
+ * cpdetector. 
+ * 
+ * The Initial Developer of the Original Code is
+ * Achim Westermann <achim.westermann@gmx.de>.
+ * 
+ * Portions created by the Initial Developer are Copyright (c) 2007 
+ * the Initial Developer. All Rights Reserved.
+ * 
+ * Contributor(s):
+ * 
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ * 
+ * ***** END LICENSE BLOCK ***** * 
+ *  
+ * If you modify or optimize the code in a useful way please let me know.
+ * Achim.Westermann@gmx.de
+ */
+package info.monitorenter.cpdetector.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.UnsupportedCharsetException;
+
+/**
+ * <p>
+ * The byte order marks (signatures) that may start a document and identify
+ * its charset:
+ * </p>
+ * <table border="1">
+ * <tr><th>Bytes</th><th>Charset</th><th>Length</th></tr>
+ * <tr><td>EF BB BF</td><td>UTF-8</td><td>3</td></tr>
+ * <tr><td>FE FF</td><td>UTF-16BE</td><td>2</td></tr>
+ * <tr><td>FF FE</td><td>UTF-16LE</td><td>2</td></tr>
+ * <tr><td>00 00 FE FF</td><td>UTF-32BE</td><td>4</td></tr>
+ * <tr><td>FF FE 00 00</td><td>UTF-32LE</td><td>4</td></tr>
+ * <tr><td>00 00 FF FE</td><td>UCS-4, unusual octet order (2143)</td><td>4</td></tr>
+ * <tr><td>FE FF 00 00</td><td>UCS-4, unusual octet order (3412)</td><td>4</td></tr>
+ * <tr><td>2B 2F 76 (38 | 39 | 2B | 2F)</td><td>UTF-7</td><td>4</td></tr>
+ * <tr><td>DD 73 66 73</td><td>UTF-EBCDIC</td><td>4</td></tr>
+ * <tr><td>0E FE FF</td><td>SCSU</td><td>3</td></tr>
+ * <tr><td>FB EE 28</td><td>BOCU-1</td><td>3</td></tr>
+ * <tr><td>84 31 95 33</td><td>GB18030</td><td>4</td></tr>
+ * </table>
+ * <p>
+ * If several marks match (e.g. UTF-16LE and UTF-32LE) the longest one wins.
+ * The charsets are resolved once: Charsets that are not supported by the VM
+ * are represented by an {@link UnsupportedCharset}.
+ * </p>
+ * <p>
+ * The length of a mark is the amount of bytes a reader has to skip to get to
+ * the content. For UTF-7 the low bits of the last byte of the mark may
+ * already belong to the first character, so UTF-7 content cannot be decoded
+ * by skipping bytes.
+ * </p>
+ * <p>
+ * Marks are looked up by a table indexed by the first byte that holds the
+ * few candidates starting with that byte, longest first. Every candidate is
+ * tested with a single masked comparison of the first 4 bytes.
+ * </p>
+ * 
+ * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+ * 
+ * @see ByteOrderMarkDetector
+ */
+public final class ByteOrderMark {
+
+  /** The maximum length of a byte order mark. */
+  public static final int MAX_LENGTH = 4;
+
+  /** UTF-8: EF BB BF. */
+  public static final ByteOrderMark UTF_8 = new ByteOrderMark("UTF-8", 3);
+
+  /** UTF-16, big-endian: FE FF. */
+  public static final ByteOrderMark UTF_16BE = new ByteOrderMark("UTF-16BE", 2);
+
+  /** UTF-16, little-endian: FF FE. */
+  public static final ByteOrderMark UTF_16LE = new ByteOrderMark("UTF-16LE", 2);
+
+  /** UTF-32, big-endian (1234 order): 00 00 FE FF. */
+  public static final ByteOrderMark UTF_32BE = new ByteOrderMark("UTF-32BE", 4);
+
+  /** UTF-32, little-endian (4321 order): FF FE 00 00. */
+  public static final ByteOrderMark UTF_32LE = new ByteOrderMark("UTF-32LE", 4);
+
+  /** UCS-4, unusual octet order (2143): 00 00 FF FE. */
+  public static final ByteOrderMark UCS_4_2143 = new ByteOrderMark("X-ISO-10646-UCS-4-2143", 4);
+
+  /** UCS-4, unusual octet order (3412): FE FF 00 00. */
+  public static final ByteOrderMark UCS_4_3412 = new ByteOrderMark("X-ISO-10646-UCS-4-3412", 4);
+
+  /** UTF-7: 2B 2F 76 followed by one of 38, 39, 2B, 2F. */
+  public static final ByteOrderMark UTF_7 = new ByteOrderMark("UTF-7", 4);
+
+  /** UTF-EBCDIC: DD 73 66 73. */
+  public static final ByteOrderMark UTF_EBCDIC = new ByteOrderMark("UTF-EBCDIC", 4);
+
+  /** Standard Compression Scheme for Unicode: 0E FE FF. */
+  public static final ByteOrderMark SCSU = new ByteOrderMark("SCSU", 3);
+
+  /** Binary Ordered Compression for Unicode: FB EE 28. */
+  public static final ByteOrderMark BOCU_1 = new ByteOrderMark("BOCU-1", 3);
+
+  /** GB18030: 84 31 95 33. */
+  public static final ByteOrderMark GB18030 = new ByteOrderMark("GB18030", 4);
+
+  /**
+   * The signatures indexed by their first byte, longest first within every
+   * slot. Slots of bytes no mark starts with are null.
+   */
+  private static final Signature[][] SIGNATURES = new Signature[256][];
+
+  static {
+    ByteOrderMark.register(ByteOrderMark.UTF_32BE, 0x0000FEFF, 0xFFFFFFFF);
+    ByteOrderMark.register(ByteOrderMark.UCS_4_2143, 0x0000FFFE, 0xFFFFFFFF);
+    ByteOrderMark.register(ByteOrderMark.UTF_32LE, 0xFFFE0000, 0xFFFFFFFF);
+    ByteOrderMark.register(ByteOrderMark.UCS_4_3412, 0xFEFF0000, 0xFFFFFFFF);
+    // 38, 39:
+    ByteOrderMark.register(ByteOrderMark.UTF_7, 0x2B2F7638, 0xFFFFFFFE);
+    // 2B, 2F:
+    ByteOrderMark.register(ByteOrderMark.UTF_7, 0x2B2F762B, 0xFFFFFFFB);
+    ByteOrderMark.register(ByteOrderMark.UTF_EBCDIC, 0xDD736673, 0xFFFFFFFF);
+    ByteOrderMark.register(ByteOrderMark.GB18030, 0x84319533, 0xFFFFFFFF);
+    ByteOrderMark.register(ByteOrderMark.UTF_8, 0xEFBBBF00, 0xFFFFFF00);
+    ByteOrderMark.register(ByteOrderMark.SCSU, 0x0EFEFF00, 0xFFFFFF00);
+    ByteOrderMark.register(ByteOrderMark.BOCU_1, 0xFBEE2800, 0xFFFFFF00);
+    ByteOrderMark.register(ByteOrderMark.UTF_16BE, 0xFEFF0000, 0xFFFF0000);
+    ByteOrderMark.register(ByteOrderMark.UTF_16LE, 0xFFFE0000, 0xFFFF0000);
+  }
+
+  /** The charset identified by this mark. */
+  private final Charset m_charset;
+
+  /** The amount of bytes of this mark. */
+  private final int m_length;
+
+  /**
+   * Creates a mark of the given length for the charset with the given name.
+   * <p>
+   * 
+   * @param charsetName
+   *          the name of the charset identified by the mark.
+   * 
+   * @param length
+   *          the amount of bytes of the mark.
+   */
+  private ByteOrderMark(final String charsetName, final int length) {
+    Charset charset;
+    try {
+      charset = Charset.forName(charsetName);
+    } catch (UnsupportedCharsetException uce) {
+      charset = UnsupportedCharset.forName(charsetName);
+    }
+    this.m_charset = charset;
+    this.m_length = length;
+  }
+
+  /**
+   * Returns the byte order mark the remaining bytes of the given buffer start
+   * with.
+   * <p>
+   * 
+   * @param buffer
+   *          the first (at most {@link #MAX_LENGTH}) remaining bytes are
+   *          inspected in place, the buffer is not modified.
+   * 
+   * @return the byte order mark the remaining bytes of the given buffer start
+   *         with or null.
+   */
+  public static ByteOrderMark valueOf(final ByteBuffer buffer) {
+    ByteOrderMark result = null;
+    int start = buffer.position();
+    int available = Math.min(ByteOrderMark.MAX_LENGTH, buffer.remaining());
+    if (available > 0) {
+      int word = 0;
+      for (int i = 0; i < ByteOrderMark.MAX_LENGTH; i++) {
+        word <<= 8;
+        if (i < available) {
+          word |= buffer.get(start + i) & 0xFF;
+        }
+      }
+      Signature[] candidates = ByteOrderMark.SIGNATURES[word >>> 24];
+      if (candidates != null) {
+        for (int i = 0; i < candidates.length; i++) {
+          if (candidates[i].matches(word, available)) {
+            result = candidates[i].m_mark;
+            break;
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the charset identified by this mark, an {@link UnsupportedCharset}
+   * if the VM does not support it.
+   * <p>
+   * 
+   * @return the charset identified by this mark.
+   */
+  public Charset getCharset() {
+    return this.m_charset;
+  }
+
+  /**
+   * Returns the amount of bytes of this mark, to be skipped by readers.
+   * <p>
+   * 
+   * @return the amount of bytes of this mark.
+   */
+  public int length() {
+    return this.m_length;
+  }
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  public String toString() {
+    return this.m_charset.displayName() + " BOM (" + this.m_length + " bytes)";
+  }
+
+  /**
+   * Adds a signature to the lookup table. Signatures have to be registered
+   * longest first.
+   */
+  private static void register(final ByteOrderMark mark, final int signature, final int mask) {
+    int first = signature >>> 24;
+    Signature[] old = ByteOrderMark.SIGNATURES[first];
+    Signature[] slot;
+    if (old == null) {
+      slot = new Signature[1];
+    } else {
+      slot = new Signature[old.length + 1];
+      System.arraycopy(old, 0, slot, 0, old.length);
+    }
+    slot[slot.length - 1] = new Signature(mark, signature, mask);
+    ByteOrderMark.SIGNATURES[first] = slot;
+  }
+
+  /**
+   * A bit pattern of the first 4 bytes of a document that identifies a mark.
+   * <p>
+   * 
+   * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+   */
+  private static final class Signature {
+
+    /** The identified mark. */
+    final ByteOrderMark m_mark;
+
+    /** The expected bits of the first 4 bytes (big-endian). */
+    private final int m_signature;
+
+    /** The bits of the first 4 bytes that have to match. */
+    private final int m_mask;
+
+    /**
+     * Creates a signature.
+     * <p>
+     * 
+     * @param mark
+     *          the identified mark.
+     * 
+     * @param signature
+     *          the expected bits of the first 4 bytes (big-endian).
+     * 
+     * @param mask
+     *          the bits of the first 4 bytes that have to match.
+     */
+    Signature(final ByteOrderMark mark, final int signature, final int mask) {
+      this.m_mark = mark;
+      this.m_signature = signature;
+      this.m_mask = mask;
+    }
+
+    /**
+     * Returns true if the given first bytes match this signature.
+     * <p>
+     * 
+     * @param word
+     *          the first 4 bytes (big-endian), zero-padded.
+     * 
+     * @param available
+     *          the amount of valid bytes in the given word.
+     * 
+     * @return true if the given first bytes match this signature.
+     */
+    boolean matches(final int word, final int available) {
+      return this.m_mark.m_length <= available && (word & this.m_mask) == this.m_signature;
+    }
+  }
+}
@@ -30,12 +30,10 @@
  */
 package info.monitorenter.cpdetector.io;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
-import java.nio.charset.UnsupportedCharsetException;
 
 /**
  * <p>
@@ -46,11 +44,11 @@ import java.nio.charset.UnsupportedCharsetException;
  * <table border="1">
  * <tr>
  * <td>00 00 FE FF</td>
- * <td>UCS-4, big-endian machine (1234 order)</td>
+ * <td>UTF-32, big-endian machine (1234 order)</td>
  * </tr>
  * <tr>
  * <td>FF FE 00 00</td>
- * <td>UCS-4,little-endian machine (4321 order)</td>
+ * <td>UTF-32, little-endian machine (4321 order)</td>
  * </tr>
  * <tr>
  * <td>00 00 FF FE</td>
@@ -72,10 +70,30 @@ import java.nio.charset.UnsupportedCharsetException;
  * <td>EF BB BF</td>
  * <td>UTF-8</td>
  * </tr>
+ * <tr>
+ * <td>2B 2F 76 (38 | 39 | 2B | 2F)</td>
+ * <td>UTF-7</td>
+ * </tr>
+ * <tr>
+ * <td>DD 73 66 73</td>
+ * <td>UTF-EBCDIC</td>
+ * </tr>
+ * <tr>
+ * <td>0E FE FF</td>
+ * <td>SCSU</td>
+ * </tr>
+ * <tr>
+ * <td>FB EE 28</td>
+ * <td>BOCU-1</td>
+ * </tr>
+ * <tr>
+ * <td>84 31 95 33</td>
+ * <td>GB18030</td>
+ * </tr>
  * </table>
  * </p>
  * <p>
- * Note that this detector is very fast as it only has to read a maximum of 8 bytes to provide a
+ * Note that this detector is very fast as it only has to read a maximum of 4 bytes to provide a
  * result. Nevertheless it is senseless to add it to the configuration if the documents to detect
  * will have a low rate of documents in the codepages that will be detected. If added to the
  * configuration of {@link info.monitorenter.cpdetector.io.CodepageDetectorProxy} it should be at
@@ -87,14 +105,15 @@ import java.nio.charset.UnsupportedCharsetException;
  * href="http://www.w3.org/TR/2004/REC-xml-20040204/#sec-guessing-no-ext-info">W3C XML Specification
  * 1.0 3rd Edition, F.1 Detection Without External Encoding Information </a>.
  * </p>
- * This implementation does the same as <code>{@link UnicodeDetector}</code> but with a different
- * read strategy (read each byte separately) and a switch case tree (-> bytecode tableswitch). Would
- * be great to have a performance comparison. Maybe the read of 4 bytes in a row combined with the
- * switch could make this implementation the winner.
+ * <p>
+ * The marks are looked up in the table of {@link ByteOrderMark}: The first 4 bytes are read at
+ * once and compared to the few candidates for the first byte. {@link #detect(ByteBuffer)} reports
+ * the length of the mark as the amount of bytes consumed, so readers may skip the mark without
+ * inspecting the document again.
  * <p>
  * 
  * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
- * @version $Revision: 1.3 $
+ * @version $Revision: 1.4 $
  */
 public class ByteOrderMarkDetector
     extends AbstractCodepageDetector implements ICodepageDetector {
@@ -105,203 +124,87 @@ public class ByteOrderMarkDetector
   private static final long serialVersionUID = 3618977875919778866L;
 
   /**
+   * Reads the (at most 4) bytes of a potential byte order mark at once and delegates to
+   * {@link #detectCodepage(ByteBuffer)}.
+   * <p>
+   * 
    * @see info.monitorenter.cpdetector.io.ICodepageDetector#detectCodepage(java.io.InputStream, int)
    */
   public Charset detectCodepage(final InputStream in, final int length) throws IOException {
-    // dumbest pragmatic code ever written (nearly a code generator would have
-    // been faster). But it's proven fast.
-    Charset result = UnknownCharset.getInstance();
-    int readByte = 0;
-    readByte = in.read();
-    switch (readByte) {
-      case (0x00): {
-        // 0x 00
-        readByte = in.read();
-        switch (readByte) {
-          case (0x00): {
-            // 0x 00 00
-            readByte = in.read();
-            switch (readByte) {
-              case (0xFE): {
-                // 0x 00 00 FE
-                // UCS-4, big-endian machine (1234 order)
-                try {
-                  result = Charset.forName("UCS-4BE");
-                } catch (UnsupportedCharsetException uce) {
-                  result = UnsupportedCharset.forName("UCS-4BE");
-                }
-                return result;
-
-              }
-              case (0xFF): {
-                // 0x 00 00 FF
-                // UCS-4, unusual octet order (2143)
-                try {
-                  result = Charset.forName("UCS-4");
-                } catch (UnsupportedCharsetException uce) {
-                  result = UnsupportedCharset.forName("UCS-4");
-                }
-                return result;
-
-              }
-              default:
-                return result;
-            }
-
-          }
-          default:
-            return result;
-        }
-      }
-      case (0xFE): {
-        // 0x FE
-        readByte = in.read();
-        switch (readByte) {
-          case (0xFF): {
-            // 0x FE FF
-            // from here on default to UTF-16, big-endian
-            readByte = in.read();
-            switch (readByte) {
-              case (0x00): {
-                // 0x FE FF 00
-                readByte = in.read();
-                switch (readByte) {
-                  case (0x00): {
-                    // 0x FE FF 00 00
-                    // UCS-4, unusual octet order (3412)
-                    try {
-                      result = Charset.forName("UCS-4");
-                    } catch (UnsupportedCharsetException uce) {
-                      result = UnsupportedCharset.forName("UCS-4");
-                    }
-                    return result;
-                  }
-                  default: {
-                    try {
-                      result = Charset.forName("UTF-16BE");
-                    } catch (UnsupportedCharsetException uce) {
-                      result = UnsupportedCharset.forName("UTF-16BE");
-                    }
-                    return result;
-                  }
-                }
-
-              }
-              default: {
-                try {
-                  result = Charset.forName("UTF-16BE");
-                } catch (UnsupportedCharsetException uce) {
-                  result = UnsupportedCharset.forName("UTF-16BE");
-                }
-                return result;
-              }
-
-            }
-
-          }
-          default: {
-            return result;
-          }
-        }
-      }
-
-      case (0xFF): {
-        // 0x FF
-        readByte = in.read();
-        switch (readByte) {
-          case (0xFE): {
-            // 0x FF FE
-            // from here on default to UTF-16, little-endian
-            readByte = in.read();
-            switch (readByte) {
-              case (0x00): {
-                // 0x FF FE 00
-                readByte = in.read();
-                switch (readByte) {
-                  case (0x00): {
-                    // 0x FF FE 00 00
-                    // UCS-4, little-endian machine (4321 order)
-                    try {
-                      result = Charset.forName("UCS-4LE");
-                    } catch (UnsupportedCharsetException uce) {
-                      result = UnsupportedCharset.forName("UCS-4LE");
-                    }
-                    return result;
-
-                  }
-                  default: {
-                    try {
-                      result = Charset.forName("UTF-16LE");
-                    } catch (UnsupportedCharsetException uce) {
-                      result = UnsupportedCharset.forName("UTF-16LE");
-                    }
-                    return result;
-                  }
-                }
-              }
-              default: {
-                try {
-                  result = Charset.forName("UTF-16LE");
-                } catch (UnsupportedCharsetException uce) {
-                  result = UnsupportedCharset.forName("UTF-16LE");
-                }
-                return result;
-              }
-            }
-          }
-          default: {
-            return result;
-          }
-        }
-      }
-      case (0xEF): {
-        // 0x EF
-        readByte = in.read();
-        switch (readByte) {
-          case (0xBB): {
-            // 0x EF BB
-            readByte = in.read();
-            switch (readByte) {
-              case (0xBF): {
-                try {
-                  result = Charset.forName("utf-8");
-                } catch (UnsupportedCharsetException uce) {
-                  result = UnsupportedCharset.forName("utf-8");
-                }
-                return result;
-
-              }
-              default: {
-                return result;
-              }
-            }
-
-          }
-          default: {
-            return result;
-          }
-        }
-
-      }
-      default:
-        return result;
+    return this.detectCodepage(ByteOrderMarkDetector.readMark(in, length));
+  }
 
+  /**
+   * Inspects the (at most 4) first remaining bytes of the given buffer in place.
+   * <p>
+   * 
+   * @see info.monitorenter.cpdetector.io.ICodepageDetector#detectCodepage(java.nio.ByteBuffer)
+   */
+  public Charset detectCodepage(final ByteBuffer buffer) throws IOException {
+    Charset result = UnknownCharset.getInstance();
+    ByteOrderMark mark = ByteOrderMark.valueOf(buffer);
+    if (mark != null) {
+      result = mark.getCharset();
     }
+    return result;
   }
 
   /**
+   * Inspects the (at most 4) first remaining bytes of the given buffer in place. A detected mark
+   * is {@link DetectionResult#CERTAIN} and its length is reported as the amount of bytes
+   * consumed.
    * <p>
-   * Delegates to {@link #detectCodepage(InputStream, int)}with a buffered input stream of size 10
-   * (8 needed as maximum).
-   * </p>
    * 
-   * @see info.monitorenter.cpdetector.io.ICodepageDetector#detectCodepage(java.net.URL)
+   * @see info.monitorenter.cpdetector.io.ICodepageDetector#detect(java.nio.ByteBuffer)
    */
-  public Charset detectCodepage(URL url) throws IOException {
-    Charset result;
-    BufferedInputStream in = new BufferedInputStream(url.openStream());
-    result = this.detectCodepage(in, Integer.MAX_VALUE);
-    in.close();
+  public DetectionResult detect(final ByteBuffer buffer) throws IOException {
+    DetectionResult result;
+    ByteOrderMark mark = ByteOrderMark.valueOf(buffer);
+    if (mark != null) {
+      result = new DetectionResult(mark.getCharset(), DetectionResult.CERTAIN, mark.length(), this);
+    } else {
+      result = new DetectionResult(UnknownCharset.getInstance(), DetectionResult.NONE, 0, this);
+    }
     return result;
   }
+
+  /**
+   * Returns a session that only buffers the first {@link ByteOrderMark#MAX_LENGTH} bytes:
+   * It is done when they are fed.
+   * <p>
+   * 
+   * @see info.monitorenter.cpdetector.io.ICodepageDetector#newSession()
+   */
+  public IDetectionSession newSession() {
+    return new AbstractCodepageDetector.BufferingSession(this, ByteOrderMark.MAX_LENGTH);
+  }
+
+  /**
+   * Reads the (at most {@link ByteOrderMark#MAX_LENGTH}) bytes of a potential byte order mark
+   * from the given stream.
+   * <p>
+   * 
+   * @param in
+   *          the stream positioned at the start of the document.
+   * 
+   * @param length
+   *          the maximum amount of bytes to read.
+   * 
+   * @return a buffer with the bytes read.
+   * 
+   * @throws IOException
+   *           if reading fails.
+   */
+  static ByteBuffer readMark(final InputStream in, final int length) throws IOException {
+    byte[] bom = new byte[Math.max(0, Math.min(ByteOrderMark.MAX_LENGTH, length))];
+    int size = 0;
+    int read = 0;
+    while (size < bom.length && read != -1) {
+      read = in.read(bom, size, bom.length - size);
+      if (read > 0) {
+        size += read;
+      }
+    }
+    return ByteBuffer.wrap(bom, 0, size);
+  }
 }
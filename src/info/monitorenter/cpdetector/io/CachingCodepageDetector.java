@@ -0,0 +1,660 @@
+/*
+ * 
+ *  CachingCodepageDetector.java  cpdetector
+ *  a detector that caches the results of another detector for files.
+ *  Copyright (C) Achim Westermann, created on 17.10.2026, 17:02:48
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ * 
+ * The contents of this collection are subject to the Mozilla Public License Version 
+ * 1.1 (the "License"); you may not use this file except in compliance with 
+ * the License. You may obtain a copy of the License at 
+ * http://www.mozilla.org/MPL/
+ * 
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ * 
+ * The Original Code is the cpDetector code in [sub] packages info.monitorenter and 
+ * cpdetector. 
+ * 
+ * The Initial Developer of the Original Code is
+ * Achim Westermann <achim.westermann@gmx.de>.
+ * 
+ * Portions created by the Initial Developer are Copyright (c) 2007 
+ * the Initial Developer. All Rights Reserved.
+ * 
+ * Contributor(s):
+ * 
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ * 
+ * ***** END LICENSE BLOCK ***** * 
+ *  
+ * If you modify or optimize the code in a useful way please let me know.
+ * Achim.Westermann@gmx.de
+ */
+package info.monitorenter.cpdetector.io;
+
+import info.monitorenter.util.ContentHash;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * A decorator that caches the charsets another {@link ICodepageDetector}
+ * (e.g. the {@link CodepageDetectorProxy}) detects for files, so repeated runs
+ * over mostly unchanged document collections only detect the changed
+ * documents.
+ * </p>
+ * <p>
+ * Files (given by {@link Path} or <code>file:</code> URL) are identified by
+ * one of two keys:
+ * <ul>
+ * <li>By default the absolute, normalized path, the length and the time of
+ * the last modification of the file. An unchanged file costs a single
+ * <code>stat</code>.</li>
+ * <li>With content keys the length and a 64 bit {@link ContentHash} of the
+ * sample the sampling strategy of the delegate picks from the file - the
+ * bytes the delegate would detect. A hit reads the same bytes as a miss
+ * (at most the budget, 64 KB by default) but saves the detection, and copies
+ * at different paths share their entry. In this mode the results for
+ * {@link ByteBuffer} instances are cached as well, keyed by a hash of the
+ * whole buffer as it is detected as given.</li>
+ * </ul>
+ * Streams and URLs of other protocols are always delegated uncached.
+ * </p>
+ * <p>
+ * The cache is a bounded LRU: When the capacity is exceeded, the least
+ * recently used entry is evicted. It may be saved to and loaded from a file
+ * (see {@link #save(Path)}, {@link #load(Path)}) between runs. Hits, misses
+ * and evictions are counted.
+ * </p>
+ * <p>
+ * Instances are thread-safe if the decorated detector is. Detection is
+ * performed outside of the lock of the cache, so two threads missing the same
+ * key concurrently may both detect it.
+ * </p>
+ * 
+ * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+ */
+public final class CachingCodepageDetector extends AbstractCodepageDetector {
+
+    /** Generated <code>serialVersionUID</code>. */
+    private static final long serialVersionUID = -4413068527795227031L;
+
+    /** The default maximum amount of cached results. */
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    /** Marks files written by {@link #save(Path)}. */
+    private static final int MAGIC = 0x43504443;
+
+    /** The version of the file format written by {@link #save(Path)}. */
+    private static final int VERSION = 1;
+
+    /** Store kind of a charset supported by the VM. */
+    private static final byte SUPPORTED = 0;
+
+    /** Store kind of an {@link UnsupportedCharset}. */
+    private static final byte UNSUPPORTED = 1;
+
+    /** Store kind of the {@link UnknownCharset}. */
+    private static final byte UNKNOWN = 2;
+
+    /** The detector whose results are cached. */
+    private final ICodepageDetector m_delegate;
+
+    /** The maximum amount of cached results. */
+    private final int m_capacity;
+
+    /** If true files are identified by their content instead of their path. */
+    private final boolean m_contentKeys;
+
+    /** The cached results in LRU order, guarded by itself. */
+    private transient LinkedHashMap<Key, Charset> m_entries;
+
+    /** The amount of lookups that found a result. */
+    private final AtomicLong m_hits = new AtomicLong();
+
+    /** The amount of lookups that had to detect. */
+    private final AtomicLong m_misses = new AtomicLong();
+
+    /** The amount of results that were dropped due to the capacity. */
+    private final AtomicLong m_evictions = new AtomicLong();
+
+    /**
+     * Creates a cache with the {@link #DEFAULT_CAPACITY} that identifies files
+     * by path, length and modification time.
+     * <p>
+     * 
+     * @param delegate
+     *            the detector whose results are cached.
+     * 
+     * @throws IllegalArgumentException
+     *             if the delegate is null.
+     */
+    public CachingCodepageDetector(final ICodepageDetector delegate) throws IllegalArgumentException {
+        this(delegate, CachingCodepageDetector.DEFAULT_CAPACITY, false);
+    }
+
+    /**
+     * Creates a cache.
+     * <p>
+     * 
+     * @param delegate
+     *            the detector whose results are cached.
+     * 
+     * @param capacity
+     *            the maximum amount of cached results.
+     * 
+     * @param contentKeys
+     *            if true files are identified by length and hash of their
+     *            content, else by path, length and modification time.
+     * 
+     * @throws IllegalArgumentException
+     *             if the delegate is null or the capacity is not positive.
+     */
+    public CachingCodepageDetector(final ICodepageDetector delegate, final int capacity, final boolean contentKeys)
+                    throws IllegalArgumentException {
+        super();
+        if (delegate == null) {
+            throw new IllegalArgumentException("Argument delegate must not be null.");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Argument capacity has to be positive: " + capacity);
+        }
+        this.m_delegate = delegate;
+        this.m_capacity = capacity;
+        this.m_contentKeys = contentKeys;
+        this.m_entries = this.createEntries();
+    }
+
+    /**
+     * Returns the detector whose results are cached.
+     * <p>
+     * 
+     * @return the detector whose results are cached.
+     */
+    public ICodepageDetector getDelegate() {
+        return this.m_delegate;
+    }
+
+    /**
+     * Returns the maximum amount of cached results.
+     * <p>
+     * 
+     * @return the maximum amount of cached results.
+     */
+    public int getCapacity() {
+        return this.m_capacity;
+    }
+
+    /**
+     * Returns true if files are identified by the hash of their content.
+     * <p>
+     * 
+     * @return true if files are identified by the hash of their content.
+     */
+    public boolean isContentKeys() {
+        return this.m_contentKeys;
+    }
+
+    /**
+     * Returns the amount of lookups that found a cached result.
+     * <p>
+     * 
+     * @return the amount of lookups that found a cached result.
+     */
+    public long getHits() {
+        return this.m_hits.get();
+    }
+
+    /**
+     * Returns the amount of lookups that had to detect.
+     * <p>
+     * 
+     * @return the amount of lookups that had to detect.
+     */
+    public long getMisses() {
+        return this.m_misses.get();
+    }
+
+    /**
+     * Returns the amount of results that were dropped due to the capacity.
+     * <p>
+     * 
+     * @return the amount of results that were dropped due to the capacity.
+     */
+    public long getEvictions() {
+        return this.m_evictions.get();
+    }
+
+    /**
+     * Returns the amount of cached results.
+     * <p>
+     * 
+     * @return the amount of cached results.
+     */
+    public int size() {
+        synchronized (this.m_entries) {
+            return this.m_entries.size();
+        }
+    }
+
+    /**
+     * Drops all cached results. The counters are not reset.
+     */
+    public void clear() {
+        synchronized (this.m_entries) {
+            this.m_entries.clear();
+        }
+    }
+
+    /**
+     * Returns the cached charset of the given file or detects it with the
+     * delegate and caches it.
+     * <p>
+     * 
+     * @see ICodepageDetector#detectCodepage(Path)
+     */
+    public Charset detectCodepage(final Path path) throws IOException {
+        return this.detectCodepage(path, null);
+    }
+
+    /**
+     * Like {@link #detectCodepage(Path)} for a file whose complete content the caller already holds (e.g. mapped to
+     * transform it after detection): Content keys hash the sample picked from the buffer and a miss detects that
+     * sample (like {@link AbstractCodepageDetector#detectDocument(ByteBuffer)}) without opening the file again. The
+     * document is neither read nor hashed completely.
+     * <p>
+     * 
+     * @param path
+     *            the file to detect.
+     * 
+     * @param document
+     *            the complete content of the file or null to read it from the file, it is not modified.
+     * 
+     * @return the charset of the file.
+     * 
+     * @throws IOException
+     *             if reading the file or the detection fails.
+     */
+    public Charset detectCodepage(final Path path, final ByteBuffer document) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        Key key;
+        ByteBuffer sample = null;
+        if (this.m_contentKeys) {
+            // hash only the sample, also if the caller holds the whole document:
+            sample = (document == null) ? this.sample(path) : this.getSamplingStrategy().sample(document.duplicate());
+            key = new Key(null, attributes.size(), 0, ContentHash.hash(sample.duplicate()));
+        } else {
+            key = new Key(path.toAbsolutePath().normalize().toString(), attributes.size(), attributes
+                            .lastModifiedTime().toMillis(), 0);
+        }
+        Charset result = this.lookup(key);
+        if (result == null) {
+            if (sample != null && this.m_delegate instanceof AbstractCodepageDetector) {
+                // the sample the delegate would pick itself:
+                result = this.m_delegate.detectCodepage(sample);
+            } else if (document != null && this.m_delegate instanceof AbstractCodepageDetector) {
+                result = ((AbstractCodepageDetector) this.m_delegate).detectDocument(document);
+            } else {
+                result = this.m_delegate.detectCodepage(path);
+            }
+            this.store(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the sampling strategy of the delegate (if it has one), as content keys hash the sample the delegate
+     * detects.
+     * <p>
+     * 
+     * @see AbstractCodepageDetector#getSamplingStrategy()
+     */
+    @Override
+    public ISamplingStrategy getSamplingStrategy() {
+        ISamplingStrategy result;
+        if (this.m_delegate instanceof AbstractCodepageDetector) {
+            result = ((AbstractCodepageDetector) this.m_delegate).getSamplingStrategy();
+        } else {
+            result = super.getSamplingStrategy();
+        }
+        return result;
+    }
+
+    /**
+     * Delegates to the decorated detector. With content keys the result is
+     * cached by the hash of the remaining bytes.
+     * <p>
+     * 
+     * @see ICodepageDetector#detectCodepage(ByteBuffer)
+     */
+    public Charset detectCodepage(final ByteBuffer buffer) throws IOException {
+        Charset result;
+        if (this.m_contentKeys) {
+            Key key = new Key(null, buffer.remaining(), 0, ContentHash.hash(buffer));
+            result = this.lookup(key);
+            if (result == null) {
+                result = this.m_delegate.detectCodepage(buffer);
+                this.store(key, result);
+            }
+        } else {
+            result = this.m_delegate.detectCodepage(buffer);
+        }
+        return result;
+    }
+
+    /**
+     * Delegates to the decorated detector (uncached).
+     * <p>
+     * 
+     * @see ICodepageDetector#detectCodepage(InputStream, int)
+     */
+    public Charset detectCodepage(final InputStream in, final int length) throws IOException {
+        return this.m_delegate.detectCodepage(in, length);
+    }
+
+    /**
+     * Delegates to the decorated detector (uncached): Only the charset is
+     * cached, not the confidence.
+     * <p>
+     * 
+     * @see ICodepageDetector#detect(ByteBuffer)
+     */
+    public DetectionResult detect(final ByteBuffer buffer) throws IOException {
+        return this.m_delegate.detect(buffer);
+    }
+
+    /**
+     * Delegates to the decorated detector (uncached): A session does not know
+     * the document it is fed with.
+     * <p>
+     * 
+     * @see ICodepageDetector#newSession()
+     */
+    public IDetectionSession newSession() {
+        return this.m_delegate.newSession();
+    }
+
+    /**
+     * Loads the results saved by {@link #save(Path)} into this cache. Loaded
+     * results are less recently used than the results already cached. Nothing
+     * is loaded if the file does not exist.
+     * <p>
+     * 
+     * @param store
+     *            the file to load.
+     * 
+     * @throws IOException
+     *             if the file cannot be read, has an unknown format or was
+     *             saved by a cache with the other kind of keys.
+     */
+    public void load(final Path store) throws IOException {
+        if (!Files.exists(store)) {
+            return;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(store)));
+        try {
+            if (in.readInt() != CachingCodepageDetector.MAGIC || in.readInt() != CachingCodepageDetector.VERSION) {
+                throw new IOException(store + " is no detection cache of a known version.");
+            }
+            if (in.readBoolean() != this.m_contentKeys) {
+                throw new IOException(store + " was saved by a cache with other kind of keys.");
+            }
+            int size = in.readInt();
+            List<Map.Entry<Key, Charset>> loaded = new ArrayList<Map.Entry<Key, Charset>>(size);
+            String path;
+            Key key;
+            Charset charset;
+            for (int i = 0; i < size; i++) {
+                path = in.readBoolean() ? in.readUTF() : null;
+                key = new Key(path, in.readLong(), in.readLong(), in.readLong());
+                charset = CachingCodepageDetector.readCharset(in);
+                loaded.add(new AbstractMap.SimpleImmutableEntry<Key, Charset>(key, charset));
+            }
+            synchronized (this.m_entries) {
+                // keep the current entries most recently used:
+                LinkedHashMap<Key, Charset> current = new LinkedHashMap<Key, Charset>(this.m_entries);
+                this.m_entries.clear();
+                for (Map.Entry<Key, Charset> entry : loaded) {
+                    this.m_entries.put(entry.getKey(), entry.getValue());
+                }
+                this.m_entries.putAll(current);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Saves the cached results in LRU order to the given file. The file is
+     * written to a temporary file first that replaces the given file when
+     * complete, so a crash never leaves a truncated store.
+     * <p>
+     * 
+     * @param store
+     *            the file to write.
+     * 
+     * @throws IOException
+     *             if writing fails.
+     */
+    public void save(final Path store) throws IOException {
+        List<Map.Entry<Key, Charset>> snapshot;
+        synchronized (this.m_entries) {
+            snapshot = new ArrayList<Map.Entry<Key, Charset>>(this.m_entries.entrySet());
+        }
+        Path absolute = store.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)));
+            try {
+                out.writeInt(CachingCodepageDetector.MAGIC);
+                out.writeInt(CachingCodepageDetector.VERSION);
+                out.writeBoolean(this.m_contentKeys);
+                out.writeInt(snapshot.size());
+                Key key;
+                for (Map.Entry<Key, Charset> entry : snapshot) {
+                    key = entry.getKey();
+                    out.writeBoolean(key.m_path != null);
+                    if (key.m_path != null) {
+                        out.writeUTF(key.m_path);
+                    }
+                    out.writeLong(key.m_length);
+                    out.writeLong(key.m_lastModified);
+                    out.writeLong(key.m_hash);
+                    CachingCodepageDetector.writeCharset(out, entry.getValue());
+                }
+            } finally {
+                out.close();
+            }
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        StringBuffer ret = new StringBuffer();
+        ret.append("Cache (").append(this.m_contentKeys ? "content" : "path").append(" keys, ");
+        ret.append(this.size()).append('/').append(this.m_capacity).append(" entries, ");
+        ret.append(this.getHits()).append(" hits, ").append(this.getMisses()).append(" misses, ");
+        ret.append(this.getEvictions()).append(" evictions) of:\n");
+        ret.append(this.m_delegate.toString());
+        return ret.toString();
+    }
+
+    /**
+     * Returns the cached result for the given key and counts the lookup.
+     */
+    private Charset lookup(final Key key) {
+        Charset result;
+        synchronized (this.m_entries) {
+            result = this.m_entries.get(key);
+        }
+        if (result == null) {
+            this.m_misses.incrementAndGet();
+        } else {
+            this.m_hits.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Caches the given result (null results of empty chains are not cached).
+     */
+    private void store(final Key key, final Charset charset) {
+        if (charset != null) {
+            synchronized (this.m_entries) {
+                this.m_entries.put(key, charset);
+            }
+        }
+    }
+
+    /**
+     * Creates the access-ordered map that evicts beyond the capacity.
+     */
+    private LinkedHashMap<Key, Charset> createEntries() {
+        return new LinkedHashMap<Key, Charset>(Math.min(this.m_capacity, 1 << 16), 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            protected boolean removeEldestEntry(final Map.Entry<Key, Charset> eldest) {
+                boolean result = this.size() > CachingCodepageDetector.this.m_capacity;
+                if (result) {
+                    CachingCodepageDetector.this.m_evictions.incrementAndGet();
+                }
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Restores the (empty) cache after deserialization: Charsets are not
+     * serializable, so cached results are not serialized.
+     */
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.m_entries = this.createEntries();
+    }
+
+    private static void writeCharset(final DataOutputStream out, final Charset charset) throws IOException {
+        if (charset == UnknownCharset.getInstance()) {
+            out.writeByte(CachingCodepageDetector.UNKNOWN);
+        } else if (charset instanceof UnsupportedCharset) {
+            out.writeByte(CachingCodepageDetector.UNSUPPORTED);
+            out.writeUTF(charset.displayName());
+        } else {
+            out.writeByte(CachingCodepageDetector.SUPPORTED);
+            out.writeUTF(charset.name());
+        }
+    }
+
+    private static Charset readCharset(final DataInputStream in) throws IOException {
+        Charset result;
+        byte kind = in.readByte();
+        if (kind == CachingCodepageDetector.UNKNOWN) {
+            result = UnknownCharset.getInstance();
+        } else {
+            String name = in.readUTF();
+            if (kind == CachingCodepageDetector.UNSUPPORTED) {
+                result = UnsupportedCharset.forName(name);
+            } else {
+                try {
+                    result = Charset.forName(name);
+                } catch (UnsupportedCharsetException uce) {
+                    // saved by a VM with more charsets:
+                    result = UnsupportedCharset.forName(name);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Identifies a document: by path, length and modification time or by
+     * length and content hash.
+     * <p>
+     * 
+     * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+     */
+    private static final class Key {
+
+        /** The absolute, normalized path or null for content keys. */
+        final String m_path;
+
+        /** The length of the document. */
+        final long m_length;
+
+        /** The modification time in milliseconds or 0 for content keys. */
+        final long m_lastModified;
+
+        /** The content hash or 0 for path keys. */
+        final long m_hash;
+
+        Key(final String path, final long length, final long lastModified, final long hash) {
+            this.m_path = path;
+            this.m_length = length;
+            this.m_lastModified = lastModified;
+            this.m_hash = hash;
+        }
+
+        /**
+         * @see java.lang.Object#hashCode()
+         */
+        public int hashCode() {
+            int result = (this.m_path == null) ? 0 : this.m_path.hashCode();
+            result = 31 * result + (int) (this.m_length ^ (this.m_length >>> 32));
+            result = 31 * result + (int) (this.m_lastModified ^ (this.m_lastModified >>> 32));
+            result = 31 * result + (int) (this.m_hash ^ (this.m_hash >>> 32));
+            return result;
+        }
+
+        /**
+         * @see java.lang.Object#equals(java.lang.Object)
+         */
+        public boolean equals(final Object obj) {
+            boolean result = false;
+            if (obj instanceof Key) {
+                Key other = (Key) obj;
+                result = this.m_length == other.m_length && this.m_lastModified == other.m_lastModified
+                                && this.m_hash == other.m_hash
+                                && (this.m_path == null ? other.m_path == null : this.m_path.equals(other.m_path));
+            }
+            return result;
+        }
+    }
+}
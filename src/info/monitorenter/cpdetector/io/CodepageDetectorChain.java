@@ -0,0 +1,980 @@
+/*
+ * 
+ *  CodepageDetectorChain.java  cpdetector
+ *  an immutable, thread-safe chain of codepage detectors.
+ *  Copyright (C) Achim Westermann, created on 17.10.2026, 09:12:31
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ * 
+ * The contents of this collection are subject to the Mozilla Public License Version 
+ * 1.1 (the "License"); you may not use this file except in compliance with 
+ * the License. You may obtain a copy of the License at 
+ * http://www.mozilla.org/MPL/
+ * 
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ * 
+ * The Original Code is the cpDetector code in [sub] packages info.monitorenter and 
+ * cpdetector. 
+ * 
+ * The Initial Developer of the Original Code is
+ * Achim Westermann <achim.westermann@gmx.de>.
+ * 
+ * Portions created by the Initial Developer are Copyright (c) 2007 
+ * the Initial Developer. All Rights Reserved.
+ * 
+ * Contributor(s):
+ * 
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ * 
+ * ***** END LICENSE BLOCK ***** * 
+ *  
+ * If you modify or optimize the code in a useful way please let me know.
+ * Achim.Westermann@gmx.de
+ */
+package info.monitorenter.cpdetector.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * <p>
+ * An immutable chain of {@link ICodepageDetector} instances that delegates the
+ * codepage detection to all it's delegates. How the result is chosen depends
+ * on the {@link Selection} of the chain:
+ * <ul>
+ * <li>{@link Selection#FIRST_MATCH} (default): The first one (added in
+ * code-order) that returns a {@link Charset} that is neither <code>null</code>,
+ * the {@link UnknownCharset} nor an {@link UnsupportedCharset} wins the race
+ * and determines the codepage of the document.</li>
+ * <li>{@link Selection#HIGHEST_CONFIDENCE}: The detected charset with the
+ * highest {@link DetectionResult#getConfidence()} wins. The search stops early
+ * as soon as a result reaches the confidence threshold of the chain.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * Instances are created by a {@link Builder} (see {@link #builder()}) and
+ * cannot be changed afterwards. Therefore they may be shared by an arbitrary
+ * amount of threads that detect concurrently without any locking. To
+ * "reconfigure" a chain a new instance has to be built (see
+ * {@link #toBuilder()}) and swapped in place of the old one. Threads that are
+ * currently detecting with the old instance will finish with the old
+ * configuration.
+ * </p>
+ * <p>
+ * Documents given by URL or path are opened once and the sample picked by the
+ * {@link ISamplingStrategy} of the chain is shared by all delegates (see
+ * {@link #detectCodepage(ByteBuffer)}). The sampling strategies of the
+ * delegates do not apply in that case.
+ * </p>
+ * <p>
+ * A chain that is built with an {@link Executor} (see
+ * {@link Builder#executor(Executor)}) asks its detectors concurrently: The
+ * first detector runs in the calling thread while the others are submitted to
+ * the executor. Results are still evaluated in chain order, so the outcome is
+ * the same as for sequential detection. As soon as the result is decided the
+ * detectors that are still pending are cancelled. This cuts the latency to
+ * the cost of the most expensive detector that has to be asked instead of the
+ * sum of all.
+ * </p>
+ * <p>
+ * Note that the chain itself is only thread-safe if the contained detectors
+ * are.
+ * </p>
+ * 
+ * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+ * 
+ * @see CodepageDetectorProxy
+ */
+public final class CodepageDetectorChain extends AbstractCodepageDetector {
+
+    /** Generated <code>serialVersionUID</code>. */
+    private static final long serialVersionUID = 2849318226532452133L;
+
+    /** The empty chain that never detects anything. */
+    private static final CodepageDetectorChain EMPTY = new Builder().build();
+
+    /**
+     * The detectors in the order they are asked. Never modified after
+     * construction.
+     */
+    private final ICodepageDetector[] m_detectors;
+
+    /** How the result is chosen from the results of the detectors. */
+    private final Selection m_selection;
+
+    /**
+     * The confidence that terminates the search for
+     * {@link Selection#HIGHEST_CONFIDENCE}.
+     */
+    private final float m_confidenceThreshold;
+
+    /**
+     * Runs the detectors concurrently or null for sequential detection. Not
+     * serialized: A deserialized chain detects sequentially.
+     */
+    private final transient Executor m_executor;
+
+    /**
+     * Creates a chain with the state of the given builder.
+     * <p>
+     * 
+     * @param builder
+     *            the builder to take the configuration from.
+     */
+    private CodepageDetectorChain(final Builder builder) {
+        super(builder.m_samplingStrategy);
+        this.m_detectors = builder.m_detectors.toArray(new ICodepageDetector[builder.m_detectors.size()]);
+        this.m_selection = builder.m_selection;
+        this.m_confidenceThreshold = builder.m_confidenceThreshold;
+        this.m_executor = builder.m_executor;
+    }
+
+    /**
+     * Returns a new builder for a chain.
+     * <p>
+     * 
+     * @return a new builder for a chain.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the chain that contains no detectors.
+     * <p>
+     * 
+     * @return the chain that contains no detectors.
+     */
+    public static CodepageDetectorChain empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns a new builder that is initialized with the detectors of this
+     * chain.
+     * <p>
+     * 
+     * @return a new builder that is initialized with the detectors of this
+     *         chain.
+     */
+    public Builder toBuilder() {
+        Builder result = new Builder();
+        result.samplingStrategy(this.getSamplingStrategy());
+        result.selection(this.m_selection);
+        result.confidenceThreshold(this.m_confidenceThreshold);
+        result.executor(this.m_executor);
+        for (int i = 0; i < this.m_detectors.length; i++) {
+            result.add(this.m_detectors[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if the given detector is part of this chain.
+     * <p>
+     * 
+     * @param detector
+     *            the detector to search for.
+     * 
+     * @return true if the given detector is part of this chain.
+     */
+    public boolean contains(final ICodepageDetector detector) {
+        boolean result = false;
+        for (int i = 0; i < this.m_detectors.length; i++) {
+            if (this.m_detectors[i].equals(detector)) {
+                result = true;
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a copy of the detectors of this chain in the order they are
+     * asked.
+     * <p>
+     * 
+     * @return a copy of the detectors of this chain in the order they are
+     *         asked.
+     */
+    public ICodepageDetector[] getDetectors() {
+        return this.m_detectors.clone();
+    }
+
+    /**
+     * Returns the confidence that terminates the search for
+     * {@link Selection#HIGHEST_CONFIDENCE}.
+     * <p>
+     * 
+     * @return the confidence that terminates the search for
+     *         {@link Selection#HIGHEST_CONFIDENCE}.
+     */
+    public float getConfidenceThreshold() {
+        return this.m_confidenceThreshold;
+    }
+
+    /**
+     * Returns the executor that runs the detectors concurrently or null if
+     * this chain detects sequentially.
+     * <p>
+     * 
+     * @return the executor that runs the detectors concurrently or null if
+     *         this chain detects sequentially.
+     */
+    public Executor getExecutor() {
+        return this.m_executor;
+    }
+
+    /**
+     * Returns how the result is chosen from the results of the detectors.
+     * <p>
+     * 
+     * @return how the result is chosen from the results of the detectors.
+     */
+    public Selection getSelection() {
+        return this.m_selection;
+    }
+
+    /**
+     * Returns the amount of detectors in this chain.
+     * <p>
+     * 
+     * @return the amount of detectors in this chain.
+     */
+    public int size() {
+        return this.m_detectors.length;
+    }
+
+    /**
+     * <p>
+     * Detects the codepage by iteratively delegating the call to all internal
+     * {@link ICodepageDetector} instances.
+     * </p>
+     * <p>
+     * The first <code>length</code> bytes of the given stream (but not more
+     * than the budget of the sampling strategy) are read once into a window
+     * that is shared by all delegates (see {@link #detectCodepage(ByteBuffer)}
+     * ), so the given stream is never re-read regardless of the amount of
+     * detectors.
+     * </p>
+     * <p>
+     * If the given stream supports marking, it is reset to the position it
+     * had before the call. Else the window has been consumed from it.
+     * </p>
+     * 
+     * @param in
+     *            An InputStream for the document.
+     * 
+     * @param length
+     *            The amount of bytes to take into account.
+     * 
+     * @see ICodepageDetector#detectCodepage(InputStream, int)
+     */
+    public Charset detectCodepage(final InputStream in, final int length) throws IOException {
+        boolean marked = in.markSupported();
+        if (marked) {
+            in.mark(length);
+        }
+        ByteBuffer window = AbstractCodepageDetector.readWindow(in, Math.min(length, this.getSamplingStrategy()
+                        .getBudget()));
+        if (marked) {
+            in.reset();
+        }
+        return this.detectCodepage(window);
+    }
+
+    /**
+     * <p>
+     * Detects the codepage by iteratively delegating the call to all internal
+     * {@link ICodepageDetector} instances. Every delegate receives an own
+     * read-only view of the given buffer.
+     * </p>
+     * 
+     * @param buffer
+     *            the bytes from position to limit are taken into account. Not
+     *            modified.
+     * 
+     * @see ICodepageDetector#detectCodepage(ByteBuffer)
+     * @see #detect(ByteBuffer)
+     */
+    public Charset detectCodepage(final ByteBuffer buffer) throws IOException {
+        Charset ret = null;
+        if (this.m_selection == Selection.FIRST_MATCH && this.m_executor == null) {
+            // no need for confidence computations:
+            for (int i = 0; i < this.m_detectors.length; i++) {
+                ret = this.m_detectors[i].detectCodepage(buffer.asReadOnlyBuffer());
+                if (DetectionResult.isDetected(ret)) {
+                    break;
+                }
+            }
+        } else {
+            ret = this.detect(buffer).getCharset();
+        }
+        return ret;
+    }
+
+    /**
+     * <p>
+     * Detects the codepage by delegating the call to the internal
+     * {@link ICodepageDetector} instances and chooses the result according to
+     * the {@link Selection} of this chain. Every delegate receives an own
+     * read-only view of the given buffer.
+     * </p>
+     * <p>
+     * If no delegate detects a supported charset, the result of the last
+     * delegate is returned. The result of an empty chain reports a
+     * <code>null</code> charset.
+     * </p>
+     * 
+     * @param buffer
+     *            the bytes from position to limit are taken into account. Not
+     *            modified.
+     * 
+     * @throws InterruptedIOException
+     *             if the calling thread is interrupted while waiting for
+     *             concurrently running detectors.
+     * 
+     * @see ICodepageDetector#detect(ByteBuffer)
+     */
+    public DetectionResult detect(final ByteBuffer buffer) throws IOException {
+        DetectionResult ret;
+        if (this.m_executor == null || this.m_detectors.length < 2) {
+            ret = this.detectSequential(buffer);
+        } else {
+            ret = this.detectConcurrent(buffer);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns a session that feeds every chunk to the sessions of the
+     * detectors that still want bytes. The results are evaluated in chain
+     * order as soon as the sessions are done, so the chain is done as soon as
+     * a final result is known.
+     * <p>
+     * The executor of this chain is not used: The sessions are fed in the
+     * thread that feeds the chain session.
+     * <p>
+     * 
+     * @see info.monitorenter.cpdetector.io.ICodepageDetector#newSession()
+     */
+    public IDetectionSession newSession() {
+        return new ChainSession(this.getSamplingStrategy().getBudget());
+    }
+
+    /**
+     * Asks the detectors one after another in the calling thread.
+     * <p>
+     * 
+     * @param buffer
+     *            the bytes from position to limit are taken into account. Not
+     *            modified.
+     * 
+     * @return the chosen result.
+     * 
+     * @throws IOException
+     *             if a detector fails.
+     */
+    private DetectionResult detectSequential(final ByteBuffer buffer) throws IOException {
+        DetectionResult best = null;
+        DetectionResult current = null;
+        for (int i = 0; i < this.m_detectors.length; i++) {
+            current = this.m_detectors[i].detect(buffer.asReadOnlyBuffer());
+            if (this.isDecisive(current, best)) {
+                best = current;
+                if (this.isFinal(best)) {
+                    break;
+                }
+            }
+        }
+        return this.fallback(best, current);
+    }
+
+    /**
+     * Runs all detectors but the first on the executor and the first in the
+     * calling thread. The results are evaluated in chain order and the
+     * detectors that are still pending when the result is decided are
+     * cancelled.
+     * <p>
+     * The detectors run as {@link ForkJoinTask} instances: If the executor is
+     * a {@link ForkJoinPool} and the calling thread is one of its workers, the
+     * tasks are forked and waiting for them lets the calling thread run them
+     * instead of blocking a worker of the pool.
+     * <p>
+     * 
+     * @param buffer
+     *            the bytes from position to limit are taken into account. Not
+     *            modified.
+     * 
+     * @return the chosen result.
+     * 
+     * @throws IOException
+     *             if a detector that is evaluated fails or the calling thread
+     *             is interrupted.
+     */
+    private DetectionResult detectConcurrent(final ByteBuffer buffer) throws IOException {
+        int size = this.m_detectors.length;
+        List<DetectionTask> tasks = new ArrayList<DetectionTask>(size);
+        // the first detector runs in the calling thread:
+        tasks.add(null);
+        DetectionTask task;
+        for (int i = 1; i < size; i++) {
+            task = new DetectionTask(this.m_detectors[i], buffer.asReadOnlyBuffer());
+            tasks.add(task);
+            this.start(task);
+        }
+        DetectionResult best = null;
+        DetectionResult current = null;
+        int i = 0;
+        try {
+            for (; i < size; i++) {
+                if (i == 0) {
+                    current = this.m_detectors[0].detect(buffer.asReadOnlyBuffer());
+                } else {
+                    current = CodepageDetectorChain.await(tasks.get(i));
+                }
+                if (this.isDecisive(current, best)) {
+                    best = current;
+                    if (this.isFinal(best)) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            // pending detectors are of no interest any more (result decided or
+            // failure):
+            for (int j = Math.max(i + 1, 1); j < size; j++) {
+                tasks.get(j).cancel(false);
+            }
+        }
+        return this.fallback(best, current);
+    }
+
+    /**
+     * Hands the given task to the executor: Forked if the calling thread is a
+     * worker of the executor, submitted to a foreign {@link ForkJoinPool} and
+     * invoked by a runnable for other executors.
+     * <p>
+     * 
+     * @param task
+     *            the task to start.
+     */
+    private void start(final DetectionTask task) {
+        Thread current = Thread.currentThread();
+        if (this.m_executor instanceof ForkJoinPool) {
+            if (current instanceof ForkJoinWorkerThread
+                            && ((ForkJoinWorkerThread) current).getPool() == this.m_executor) {
+                task.fork();
+            } else {
+                ((ForkJoinPool) this.m_executor).execute(task);
+            }
+        } else {
+            this.m_executor.execute(new Runnable() {
+                public void run() {
+                    task.quietlyInvoke();
+                }
+            });
+        }
+    }
+
+    /**
+     * Waits for the given task and unwraps failures.
+     * <p>
+     * 
+     * @param task
+     *            the task to wait for.
+     * 
+     * @return the result of the task.
+     * 
+     * @throws IOException
+     *             if the detector of the task failed or the calling thread is
+     *             interrupted.
+     */
+    private static DetectionResult await(final DetectionTask task) throws IOException {
+        DetectionResult result;
+        try {
+            result = task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException ioe = new InterruptedIOException("Interrupted while waiting for a detector.");
+            ioe.initCause(e);
+            throw ioe;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new IOException(cause);
+            }
+        }
+        if (task.m_failure != null) {
+            throw task.m_failure;
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if the given result replaces the best result so far.
+     * <p>
+     * 
+     * @param current
+     *            the result of the detector that was asked last.
+     * 
+     * @param best
+     *            the best result so far or null.
+     * 
+     * @return true if the given result replaces the best result so far.
+     */
+    private boolean isDecisive(final DetectionResult current, final DetectionResult best) {
+        return current.isDetected() && (best == null || current.getConfidence() > best.getConfidence());
+    }
+
+    /**
+     * Returns true if the given best result makes asking the remaining
+     * detectors needless.
+     * <p>
+     * 
+     * @param best
+     *            the best result so far.
+     * 
+     * @return true if the given best result makes asking the remaining
+     *         detectors needless.
+     */
+    private boolean isFinal(final DetectionResult best) {
+        return this.m_selection == Selection.FIRST_MATCH || best.getConfidence() >= this.m_confidenceThreshold;
+    }
+
+    /**
+     * Returns the given best result or - if nothing was detected - the given
+     * last result or - for an empty chain - a result without charset.
+     * <p>
+     * 
+     * @param best
+     *            the best result or null.
+     * 
+     * @param last
+     *            the result of the last detector asked or null.
+     * 
+     * @return the result of the chain.
+     */
+    private DetectionResult fallback(final DetectionResult best, final DetectionResult last) {
+        DetectionResult ret = best;
+        if (ret == null) {
+            ret = (last != null) ? last : new DetectionResult(null, DetectionResult.NONE, 0, this);
+        }
+        return ret;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        StringBuffer ret = new StringBuffer();
+        for (int i = 0; i < this.m_detectors.length; i++) {
+            ret.append(i + 1);
+            ret.append(") ");
+            ret.append(this.m_detectors[i].getClass().getName());
+            ret.append("\n");
+        }
+        return ret.toString();
+    }
+
+    /**
+     * Mutable, not thread-safe builder for {@link CodepageDetectorChain}
+     * instances.
+     * <p>
+     * Remember that the order of added {@link ICodepageDetector} instances is
+     * important for the delegation (see class description of the chain).
+     * <p>
+     * 
+     * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+     */
+    public static final class Builder {
+
+        /** The detectors in order of addition, no duplicates. */
+        private Set<ICodepageDetector> m_detectors = new LinkedHashSet<ICodepageDetector>();
+
+        /** The sampling strategy of the chain under construction. */
+        private ISamplingStrategy m_samplingStrategy = new HeadSamplingStrategy();
+
+        /** The selection of the chain under construction. */
+        private Selection m_selection = Selection.FIRST_MATCH;
+
+        /** The confidence threshold of the chain under construction. */
+        private float m_confidenceThreshold = DetectionResult.CERTAIN;
+
+        /** The executor of the chain under construction or null. */
+        private Executor m_executor;
+
+        /**
+         * Use {@link CodepageDetectorChain#builder()}.
+         */
+        Builder() {
+            super();
+        }
+
+        /**
+         * Appends the given detector to the chain under construction if it is
+         * not already contained.
+         * <p>
+         * 
+         * @param detector
+         *            the detector to append.
+         * 
+         * @return this builder for chained calls.
+         * 
+         * @throws IllegalArgumentException
+         *             if the given detector is null.
+         */
+        public Builder add(final ICodepageDetector detector) throws IllegalArgumentException {
+            if (detector == null) {
+                throw new IllegalArgumentException("Argument detector must not be null.");
+            }
+            this.m_detectors.add(detector);
+            return this;
+        }
+
+        /**
+         * Removes the given detector from the chain under construction.
+         * <p>
+         * 
+         * @param detector
+         *            the detector to remove.
+         * 
+         * @return this builder for chained calls.
+         */
+        public Builder remove(final ICodepageDetector detector) {
+            this.m_detectors.remove(detector);
+            return this;
+        }
+
+        /**
+         * Removes all detectors from the chain under construction.
+         * <p>
+         * 
+         * @return this builder for chained calls.
+         */
+        public Builder clear() {
+            this.m_detectors.clear();
+            return this;
+        }
+
+        /**
+         * Sets the strategy that decides which bytes of documents given by
+         * URL or path are shared by the detectors of the chain under
+         * construction. The default takes the first
+         * {@link ISamplingStrategy#DEFAULT_BUDGET} bytes.
+         * <p>
+         * 
+         * @param samplingStrategy
+         *            decides which bytes of documents are taken into account.
+         * 
+         * @return this builder for chained calls.
+         * 
+         * @throws IllegalArgumentException
+         *             if the argument is null.
+         */
+        public Builder samplingStrategy(final ISamplingStrategy samplingStrategy) throws IllegalArgumentException {
+            if (samplingStrategy == null) {
+                throw new IllegalArgumentException("Argument samplingStrategy must not be null.");
+            }
+            this.m_samplingStrategy = samplingStrategy;
+            return this;
+        }
+
+        /**
+         * Sets how the result is chosen from the results of the detectors.
+         * Default is {@link Selection#FIRST_MATCH}.
+         * <p>
+         * 
+         * @param selection
+         *            how the result is chosen from the results of the
+         *            detectors.
+         * 
+         * @return this builder for chained calls.
+         * 
+         * @throws IllegalArgumentException
+         *             if the argument is null.
+         */
+        public Builder selection(final Selection selection) throws IllegalArgumentException {
+            if (selection == null) {
+                throw new IllegalArgumentException("Argument selection must not be null.");
+            }
+            this.m_selection = selection;
+            return this;
+        }
+
+        /**
+         * Sets the confidence that terminates the search for
+         * {@link Selection#HIGHEST_CONFIDENCE}: The first detected result
+         * with at least this confidence is taken without asking the remaining
+         * detectors. Default is {@link DetectionResult#CERTAIN}.
+         * <p>
+         * 
+         * @param confidenceThreshold
+         *            the confidence in [0.0 .. 1.0] that terminates the
+         *            search.
+         * 
+         * @return this builder for chained calls.
+         * 
+         * @throws IllegalArgumentException
+         *             if the argument is not in [0.0 .. 1.0].
+         */
+        public Builder confidenceThreshold(final float confidenceThreshold) throws IllegalArgumentException {
+            if (!(confidenceThreshold >= DetectionResult.NONE && confidenceThreshold <= DetectionResult.CERTAIN)) {
+                throw new IllegalArgumentException("Confidence threshold has to be in [0.0 .. 1.0]: "
+                                + confidenceThreshold);
+            }
+            this.m_confidenceThreshold = confidenceThreshold;
+            return this;
+        }
+
+        /**
+         * Sets the executor that runs the detectors of the chain under
+         * construction concurrently. Default is null: Detectors are asked
+         * one after another in the calling thread.
+         * <p>
+         * The executor should be shared (e.g. a thread pool of the
+         * application or {@link ForkJoinPool#commonPool()}, see
+         * {@link #parallel()}) as the chain does never shut it down.
+         * <p>
+         * 
+         * @param executor
+         *            runs the detectors concurrently or null for sequential
+         *            detection.
+         * 
+         * @return this builder for chained calls.
+         */
+        public Builder executor(final Executor executor) {
+            this.m_executor = executor;
+            return this;
+        }
+
+        /**
+         * Lets the chain under construction run its detectors concurrently
+         * on the {@link ForkJoinPool#commonPool()}.
+         * <p>
+         * Safe to use from workers of the common pool (e.g. parallel streams):
+         * A worker waiting for the detectors runs them itself.
+         * <p>
+         * 
+         * @return this builder for chained calls.
+         * 
+         * @see #executor(Executor)
+         */
+        public Builder parallel() {
+            return this.executor(ForkJoinPool.commonPool());
+        }
+
+        /**
+         * Creates the immutable chain with the current state of this builder.
+         * <p>
+         * The builder may be reused afterwards without affecting the returned
+         * chain.
+         * <p>
+         * 
+         * @return the immutable chain with the current state of this builder.
+         */
+        public CodepageDetectorChain build() {
+            return new CodepageDetectorChain(this);
+        }
+    }
+
+    /**
+     * Runs a single detector of a concurrent detection.
+     * <p>
+     * 
+     * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+     */
+    private static final class DetectionTask extends RecursiveTask<DetectionResult> {
+
+        /** Generated <code>serialVersionUID</code>. */
+        private static final long serialVersionUID = 4473180123489113537L;
+
+        /** The detector to ask. */
+        private final ICodepageDetector m_detector;
+
+        /** The own view of the shared sample for the detector. */
+        private final transient ByteBuffer m_sample;
+
+        /** The failure of the detector or null. */
+        IOException m_failure;
+
+        /**
+         * Creates a task that asks the given detector for the given sample.
+         * <p>
+         * 
+         * @param detector
+         *            the detector to ask.
+         * 
+         * @param sample
+         *            the own view of the shared sample for the detector.
+         */
+        DetectionTask(final ICodepageDetector detector, final ByteBuffer sample) {
+            this.m_detector = detector;
+            this.m_sample = sample;
+        }
+
+        /**
+         * Asks the detector and keeps its {@link IOException} for
+         * {@link CodepageDetectorChain#await(DetectionTask)}.
+         * <p>
+         * 
+         * @see java.util.concurrent.RecursiveTask#compute()
+         */
+        protected DetectionResult compute() {
+            DetectionResult result = null;
+            try {
+                result = this.m_detector.detect(this.m_sample);
+            } catch (IOException e) {
+                this.m_failure = e;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Feeds the sessions of the detectors of the chain and evaluates their
+     * results in chain order.
+     * <p>
+     * 
+     * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+     */
+    private final class ChainSession extends AbstractDetectionSession {
+
+        /** The sessions of the detectors in chain order. */
+        private final IDetectionSession[] m_sessions;
+
+        /** The index of the first session that is not evaluated yet. */
+        private int m_next = 0;
+
+        /** The best result so far or null. */
+        private DetectionResult m_best = null;
+
+        /** The result of the session evaluated last or null. */
+        private DetectionResult m_last = null;
+
+        /** True if the remaining sessions need not be evaluated. */
+        private boolean m_decided = false;
+
+        ChainSession(final int budget) {
+            super(budget);
+            ICodepageDetector[] detectors = CodepageDetectorChain.this.m_detectors;
+            this.m_sessions = new IDetectionSession[detectors.length];
+            for (int i = 0; i < detectors.length; i++) {
+                this.m_sessions[i] = detectors[i].newSession();
+            }
+            this.m_decided = detectors.length == 0;
+        }
+
+        /**
+         * @see info.monitorenter.cpdetector.io.AbstractDetectionSession#update(java.nio.ByteBuffer)
+         */
+        protected void update(final ByteBuffer chunk) throws IOException {
+            for (int i = this.m_next; i < this.m_sessions.length; i++) {
+                if (!this.m_sessions[i].isDone()) {
+                    this.m_sessions[i].feed(chunk.duplicate());
+                }
+            }
+            this.evaluate(false);
+        }
+
+        /**
+         * Evaluates the results of the sessions in chain order up to the first
+         * session that is not done or - at the end of the document - up to the
+         * first final result.
+         * <p>
+         * 
+         * @param end
+         *            true if no more bytes will be fed.
+         * 
+         * @throws IOException
+         *             if a detector fails.
+         */
+        private void evaluate(final boolean end) throws IOException {
+            IDetectionSession session;
+            while (!this.m_decided && this.m_next < this.m_sessions.length) {
+                session = this.m_sessions[this.m_next];
+                if (!end && !session.isDone()) {
+                    break;
+                }
+                this.m_last = session.finish();
+                this.m_next++;
+                if (CodepageDetectorChain.this.isDecisive(this.m_last, this.m_best)) {
+                    this.m_best = this.m_last;
+                    this.m_decided = CodepageDetectorChain.this.isFinal(this.m_best);
+                }
+            }
+            if (this.m_next == this.m_sessions.length) {
+                this.m_decided = true;
+            }
+        }
+
+        /**
+         * @see info.monitorenter.cpdetector.io.AbstractDetectionSession#isDecided()
+         */
+        protected boolean isDecided() {
+            return this.m_decided;
+        }
+
+        /**
+         * @see info.monitorenter.cpdetector.io.AbstractDetectionSession#result()
+         */
+        protected DetectionResult result() throws IOException {
+            this.evaluate(true);
+            return CodepageDetectorChain.this.fallback(this.m_best, this.m_last);
+        }
+    }
+
+    /**
+     * The ways a chain chooses the result from the results of its detectors.
+     * <p>
+     * 
+     * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+     */
+    public static enum Selection {
+        /**
+         * The first detector (in chain order) that detects a supported
+         * charset determines the result.
+         */
+        FIRST_MATCH,
+
+        /**
+         * The detected supported charset with the highest confidence
+         * determines the result. Ties are won by the detector that comes
+         * first in chain order.
+         */
+        HIGHEST_CONFIDENCE
+    }
+}
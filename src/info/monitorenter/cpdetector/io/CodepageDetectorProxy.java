@@ -43,10 +43,10 @@ package info.monitorenter.cpdetector.io;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
-import java.util.Iterator;
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
 
 /**
  * <p>
@@ -60,6 +60,16 @@ import java.util.Set;
  * {@link java.io.IOException}, the delegation search will be terminated by
  * throwing this exception.
  * </p>
+ * <p>
+ * This singleton is a facade over an immutable {@link CodepageDetectorChain}.
+ * Detection calls work on the chain that is current when the call starts and
+ * need no locks. Modifications ({@link #add(ICodepageDetector)},
+ * {@link #clearDetectors()}, {@link #setChain(CodepageDetectorChain)}) build
+ * a new chain and swap it in (copy-on-write). Code that needs an own
+ * configuration (e.g. a server with different detector setups) should use
+ * {@link CodepageDetectorChain#builder()} directly instead of sharing this
+ * instance.
+ * </p>
  * 
  * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
  * 
@@ -72,16 +82,17 @@ public final class CodepageDetectorProxy extends AbstractCodepageDetector {
     /**
      * Singleton instance.
      */
-    private static CodepageDetectorProxy instance = null;
+    private static final CodepageDetectorProxy instance = new CodepageDetectorProxy();
 
     /**
-     * The set of {@link ICodepageDetector}instances that this proxy will
-     * delegate to. These instances will be invoked in order to find the
-     * codepage until the first instance returns a valid codepage. If an
-     * {@link IOException}is thrown the search will terminate early (assuming
-     * that the execption is related to a general problem with the given URL.
+     * The current immutable snapshot of the {@link ICodepageDetector}instances
+     * that this proxy will delegate to. These instances will be invoked in
+     * order to find the codepage until the first instance returns a valid
+     * codepage. If an {@link IOException}is thrown the search will terminate
+     * early (assuming that the execption is related to a general problem with
+     * the given URL.
      */
-    private Set<ICodepageDetector> detectors = new LinkedHashSet<ICodepageDetector>();
+    private volatile CodepageDetectorChain m_chain = CodepageDetectorChain.empty();
 
     /**
      * Singleton constructor. For internal use only.
@@ -100,9 +111,6 @@ public final class CodepageDetectorProxy extends AbstractCodepageDetector {
      * @return the sole instance in this VM.
      */
     public static CodepageDetectorProxy getInstance() {
-        if (CodepageDetectorProxy.instance == null) {
-            CodepageDetectorProxy.instance = new CodepageDetectorProxy();
-        }
         return CodepageDetectorProxy.instance;
     }
 
@@ -114,16 +122,110 @@ public final class CodepageDetectorProxy extends AbstractCodepageDetector {
      * for the internal delegation (see class description).
      * <p>
      * 
+     * @return true if the detector was added, false if it already was
+     *         contained.
      */
-    public boolean add(ICodepageDetector detector) {
-        return this.detectors.add(detector);
+    public synchronized boolean add(ICodepageDetector detector) {
+        boolean result = false;
+        if (!this.m_chain.contains(detector)) {
+            this.m_chain = this.m_chain.toBuilder().add(detector).build();
+            result = true;
+        }
+        return result;
     }
 
     /**
      * Clear all the detectors added to this instance
      */
-    public void clearDetectors() {
-        this.detectors.clear();
+    public synchronized void clearDetectors() {
+        this.m_chain = this.m_chain.toBuilder().clear().build();
+    }
+
+    /**
+     * Returns the current immutable detector chain this proxy delegates to.
+     * <p>
+     * 
+     * @return the current immutable detector chain this proxy delegates to.
+     */
+    public CodepageDetectorChain getChain() {
+        return this.m_chain;
+    }
+
+    /**
+     * Replaces the detector chain this proxy delegates to.
+     * <p>
+     * Detections that are running concurrently finish with the previous
+     * chain.
+     * <p>
+     * 
+     * @param chain
+     *            the new chain to delegate to.
+     * 
+     * @throws IllegalArgumentException
+     *             if the given chain is null.
+     */
+    public synchronized void setChain(final CodepageDetectorChain chain) throws IllegalArgumentException {
+        if (chain == null) {
+            throw new IllegalArgumentException("Argument chain must not be null.");
+        }
+        this.m_chain = chain;
+    }
+
+    /**
+     * Returns the sampling strategy of the current chain.
+     * <p>
+     * 
+     * @see AbstractCodepageDetector#getSamplingStrategy()
+     */
+    @Override
+    public ISamplingStrategy getSamplingStrategy() {
+        return this.m_chain.getSamplingStrategy();
+    }
+
+    /**
+     * Replaces the current chain by one with the given sampling strategy.
+     * <p>
+     * 
+     * @see AbstractCodepageDetector#setSamplingStrategy(ISamplingStrategy)
+     */
+    @Override
+    public synchronized void setSamplingStrategy(final ISamplingStrategy samplingStrategy)
+                    throws IllegalArgumentException {
+        this.m_chain = this.m_chain.toBuilder().samplingStrategy(samplingStrategy).build();
+    }
+
+    /**
+     * Returns the executor that runs the detectors of the current chain
+     * concurrently or null if they are asked sequentially.
+     * <p>
+     * 
+     * @return the executor that runs the detectors of the current chain
+     *         concurrently or null if they are asked sequentially.
+     * 
+     * @see CodepageDetectorChain#getExecutor()
+     */
+    public Executor getExecutor() {
+        return this.m_chain.getExecutor();
+    }
+
+    /**
+     * Replaces the current chain by one that runs its detectors concurrently
+     * on the given executor.
+     * <p>
+     * This cuts the latency of detection when the cheap detectors at the
+     * start of the chain do not match and expensive ones (e.g.
+     * {@link JChardetFacade}) have to be asked. The result is the same as for
+     * sequential detection.
+     * <p>
+     * 
+     * @param executor
+     *            runs the detectors concurrently or null for sequential
+     *            detection.
+     * 
+     * @see CodepageDetectorChain.Builder#executor(Executor)
+     */
+    public synchronized void setExecutor(final Executor executor) {
+        this.m_chain = this.m_chain.toBuilder().executor(executor).build();
     }
 
     /**
@@ -134,23 +236,7 @@ public final class CodepageDetectorProxy extends AbstractCodepageDetector {
      *             If a problem with the url - handling occurs.
      */
     public Charset detectCodepage(final URL url) throws IOException {
-        Charset ret = null;
-        Iterator<ICodepageDetector> detectorIt = this.detectors.iterator();
-        while (detectorIt.hasNext()) {
-            ret = detectorIt.next().detectCodepage(url);
-            if (ret != null) {
-                if (ret != UnknownCharset.getInstance()) {
-                    if (ret instanceof UnsupportedCharset) {
-                        // TODO: Debug logging: found illegal charset tag or
-                        // encoding
-                        // declaration.
-                    } else {
-                        break;
-                    }
-                }
-            }
-        }
-        return ret;
+        return this.m_chain.detectCodepage(url);
     }
 
     /**
@@ -160,19 +246,18 @@ public final class CodepageDetectorProxy extends AbstractCodepageDetector {
      * {@link #add(ICodepageDetector)}.
      * </p>
      * <p>
-     * The given InputStream has to support mark such that the call
-     * {@link InputStream#mark(int)} with argument length does not throw an
-     * exception. This is needed, as the stream has to be resetted to the
-     * beginning for each internal delegate that tries to detect.
+     * The first <code>length</code> bytes of the given stream are read only
+     * once and shared by all delegates (see
+     * {@link CodepageDetectorChain#detectCodepage(InputStream, int)}). If the
+     * given stream supports marking it is reset afterwards.
      * </p>
      * <p>
-     * If this is impossible (large documents), prefer using
-     * {@link #detectCodepage(URL)}.
+     * The window is held in memory. If this is impossible (large documents),
+     * prefer using {@link #detectCodepage(URL)}.
      * </p>
      * 
      * @param in
-     *            An InputStream for the document, that supports mark and a
-     *            readlimit of argument length.
+     *            An InputStream for the document.
      * 
      * @param length
      *            The amount of bytes to take into account. This number shouls
@@ -182,65 +267,71 @@ public final class CodepageDetectorProxy extends AbstractCodepageDetector {
      * 
      * @see cpdetector.io.ICodepageDetector#detectCodepage(java.io.InputStream,
      *      int length)
+     */
+    public Charset detectCodepage(final InputStream in, final int length) throws IOException {
+        return this.m_chain.detectCodepage(in, length);
+    }
+
+    /**
+     * Detects the codepage of the remaining bytes of the given buffer by
+     * delegating to all internal {@link ICodepageDetector} instances.
+     * <p>
      * 
-     * @throws IllegalArgumentException
-     *             if more bytes had to be read from the input stream than param
-     *             length or the given input stream does not support marking.
+     * @see CodepageDetectorChain#detectCodepage(ByteBuffer)
      */
-    public Charset detectCodepage(final InputStream in, final int length) throws IOException, IllegalArgumentException {
+    public Charset detectCodepage(final ByteBuffer buffer) throws IOException {
+        return this.m_chain.detectCodepage(buffer);
+    }
 
-        if (!in.markSupported()) {
-            throw new IllegalArgumentException("The given input stream (" + in.getClass().getName()
-                            + ") has to support for marking.");
-        }
-        Charset ret = null;
-        int markLimit = length;
-        Iterator<ICodepageDetector> detectorIt = this.detectors.iterator();
-        while (detectorIt.hasNext()) {
-            in.mark(markLimit);
-            ret = detectorIt.next().detectCodepage(in, length);
-            // if more bytes have been read than marked (length) this will throw
-            // an
-            // exception:
-            try {
-                in.reset();
-            } catch (IOException ioex) {
-                IllegalStateException ise = new IllegalStateException(
-                                "More than the given length had to be read and the given stream could not be reset. Undetermined state for this detection.");
-                ise.initCause(ioex);
-                throw ise;
-
-            }
-            if (ret != null) {
-                if (ret != UnknownCharset.getInstance()) {
-                    if (ret instanceof UnsupportedCharset) {
-                        // TODO: Debug logging: found illegal charset tag or
-                        // encoding
-                        // declaration.
-                    } else {
-                        break;
-                    }
-                }
-            }
-        }
-        return ret;
+    /**
+     * Detects the codepage of the given local file by delegating to all
+     * internal {@link ICodepageDetector} instances.
+     * <p>
+     * 
+     * @see CodepageDetectorChain#detectCodepage(Path)
+     */
+    public Charset detectCodepage(final Path path) throws IOException {
+        return this.m_chain.detectCodepage(path);
+    }
+
+    /**
+     * Scores the remaining bytes of the given buffer by delegating to all
+     * internal {@link ICodepageDetector} instances.
+     * <p>
+     * 
+     * @see CodepageDetectorChain#detect(ByteBuffer)
+     */
+    public DetectionResult detect(final ByteBuffer buffer) throws IOException {
+        return this.m_chain.detect(buffer);
+    }
+
+    /**
+     * Scores the given local file by delegating to all internal
+     * {@link ICodepageDetector} instances.
+     * <p>
+     * 
+     * @see CodepageDetectorChain#detect(Path)
+     */
+    public DetectionResult detect(final Path path) throws IOException {
+        return this.m_chain.detect(path);
+    }
+
+    /**
+     * Returns a session that feeds all internal {@link ICodepageDetector}
+     * instances.
+     * <p>
+     * 
+     * @see CodepageDetectorChain#newSession()
+     */
+    public IDetectionSession newSession() {
+        return this.m_chain.newSession();
     }
 
     /**
      * @see java.lang.Object#toString()
      */
     public String toString() {
-        StringBuffer ret = new StringBuffer();
-        Iterator<ICodepageDetector> it = this.detectors.iterator();
-        int i = 1;
-        while (it.hasNext()) {
-            ret.append(i);
-            ret.append(") ");
-            ret.append(it.next().getClass().getName());
-            ret.append("\n");
-            i++;
-        }
-        return ret.toString();
+        return this.m_chain.toString();
     }
 
 }
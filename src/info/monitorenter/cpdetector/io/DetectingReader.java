@@ -0,0 +1,175 @@
+/*
+ * 
+ *  DetectingReader.java  cpdetector
+ *  a reader that detects the codepage of the head of its stream.
+ *  Copyright (C) Achim Westermann, created on 18.10.2026, 09:14:37
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ * 
+ * The contents of this collection are subject to the Mozilla Public License Version 
+ * 1.1 (the "License"); you may not use this file except in compliance with 
+ * the License. You may obtain a copy of the License at 
+ * http://www.mozilla.org/MPL/
+ * 
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ * 
+ * The Original Code is the cpDetector code in [sub] packages info.monitorenter and 
+ * cpdetector. 
+ * 
+ * The Initial Developer of the Original Code is
+ * Achim Westermann <achim.westermann@gmx.de>.
+ * 
+ * Portions created by the Initial Developer are Copyright (c) 2007 
+ * the Initial Developer. All Rights Reserved.
+ * 
+ * Contributor(s):
+ * 
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ * 
+ * ***** END LICENSE BLOCK ***** * 
+ *  
+ * If you modify or optimize the code in a useful way please let me know.
+ * Achim.Westermann@gmx.de
+ */
+package info.monitorenter.cpdetector.io;
+
+import info.monitorenter.io.ByteBufferInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * <p>
+ * A reader over a stream whose codepage is detected from the head of the stream while it is read
+ * only once: The head bytes that the detector needs are buffered, detected and then replayed
+ * followed by the rest of the live stream.
+ * </p>
+ * <p>
+ * This allows to open sources like HTTP URLs with a single connection (see
+ * {@link AbstractCodepageDetector#open(java.net.URL)}). The memory is bounded by the detection
+ * budget.
+ * </p>
+ * 
+ * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+ */
+public final class DetectingReader extends Reader {
+
+  /** The reader decoding the replayed head and the rest of the stream. */
+  private final Reader m_reader;
+
+  /** The detected charset. */
+  private final Charset m_charset;
+
+  /**
+   * Creates an instance.
+   * <p>
+   * 
+   * @param reader
+   *          the reader decoding the replayed head and the rest of the stream.
+   * 
+   * @param charset
+   *          the detected charset.
+   */
+  private DetectingReader(final Reader reader, final Charset charset) {
+    super();
+    this.m_reader = reader;
+    this.m_charset = charset;
+  }
+
+  /**
+   * Reads up to <code>budget</code> bytes from the head of the given stream, detects their charset
+   * with the given detector and returns a reader over the complete stream in the detected charset.
+   * <p>
+   * The stream is closed if no supported charset was detected or an exception is thrown, else it is
+   * closed by closing the returned reader.
+   * <p>
+   * 
+   * @param in
+   *          the stream to read.
+   * 
+   * @param detector
+   *          the detector for the head of the stream.
+   * 
+   * @param budget
+   *          the maximum amount of bytes to buffer for detection.
+   * 
+   * @return a reader over the complete stream or null if no supported charset was detected.
+   * 
+   * @throws IOException
+   *           if reading the head of the stream or the detection fails.
+   */
+  public static DetectingReader open(final InputStream in, final ICodepageDetector detector,
+      final int budget) throws IOException {
+    DetectingReader result = null;
+    try {
+      ByteBuffer head = AbstractCodepageDetector.readWindow(in, budget);
+      Charset charset = detector.detectCodepage(head.duplicate());
+      if (DetectionResult.isDetected(charset)) {
+        InputStream replay = new SequenceInputStream(new ByteBufferInputStream(head), in);
+        result = new DetectingReader(new InputStreamReader(replay, charset), charset);
+      }
+    } finally {
+      if (result == null) {
+        in.close();
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the detected charset.
+   * <p>
+   * 
+   * @return the detected charset.
+   */
+  public Charset getCharset() {
+    return this.m_charset;
+  }
+
+  /**
+   * @see java.io.Reader#read()
+   */
+  public int read() throws IOException {
+    return this.m_reader.read();
+  }
+
+  /**
+   * @see java.io.Reader#read(char[], int, int)
+   */
+  public int read(final char[] cbuf, final int off, final int len) throws IOException {
+    return this.m_reader.read(cbuf, off, len);
+  }
+
+  /**
+   * @see java.io.Reader#ready()
+   */
+  public boolean ready() throws IOException {
+    return this.m_reader.ready();
+  }
+
+  /**
+   * @see java.io.Reader#close()
+   */
+  public void close() throws IOException {
+    this.m_reader.close();
+  }
+}
@@ -0,0 +1,333 @@
+/*
+ * 
+ *  DetectionResult.java  cpdetector
+ *  the outcome of a codepage detection with its confidence.
+ *  Copyright (C) Achim Westermann, created on 17.10.2026, 13:02:18
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ * 
+ * The contents of this collection are subject to the Mozilla Public License Version 
+ * 1.1 (the "License"); you may not use this file except in compliance with 
+ * the License. You may obtain a copy of the License at 
+ * http://www.mozilla.org/MPL/
+ * 
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ * 
+ * The Original Code is the cpDetector code in [sub] packages info.monitorenter and 
+ * cpdetector. 
+ * 
+ * The Initial Developer of the Original Code is
+ * Achim Westermann <achim.westermann@gmx.de>.
+ * 
+ * Portions created by the Initial Developer are Copyright (c) 2007 
+ * the Initial Developer. All Rights Reserved.
+ * 
+ * Contributor(s):
+ * 
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ * 
+ * ***** END LICENSE BLOCK ***** * 
+ *  
+ * If you modify or optimize the code in a useful way please let me know.
+ * Achim.Westermann@gmx.de
+ */
+package info.monitorenter.cpdetector.io;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+
+/**
+ * The immutable outcome of a codepage detection: the charset, a confidence
+ * score, the amount of bytes the detector consumed and the detector that
+ * produced it.
+ * <p>
+ * The confidence is in the range [0.0 .. 1.0]:
+ * <ul>
+ * <li>1.0: The detector is certain (e.g. a byte order mark, a charset
+ * declaration or a statistical detector that could exclude all other
+ * candidates).</li>
+ * <li>Between: The detector guessed among several candidates (e.g.
+ * {@link JChardetFacade} guessing from n probable charsets reports 1/n).</li>
+ * <li>0.0: Nothing was detected ({@link UnknownCharset}) or the detected
+ * charset is not supported ({@link UnsupportedCharset}).</li>
+ * </ul>
+ * <p>
+ * 
+ * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+ * 
+ * @see ICodepageDetector#detect(java.nio.ByteBuffer)
+ */
+public final class DetectionResult implements Serializable {
+
+  /** Generated <code>serialVersionUID</code>. */
+  private static final long serialVersionUID = -6529076123784190742L;
+
+  /** Confidence of certain results. */
+  public static final float CERTAIN = 1.0f;
+
+  /** Confidence of results that did not detect anything. */
+  public static final float NONE = 0.0f;
+
+  /** Serialized form of a null charset. */
+  private static final byte CHARSET_NULL = 0;
+
+  /** Serialized form of a supported charset, followed by its name. */
+  private static final byte CHARSET_SUPPORTED = 1;
+
+  /**
+   * Serialized form of an {@link UnsupportedCharset}, followed by the
+   * detected name.
+   */
+  private static final byte CHARSET_UNSUPPORTED = 2;
+
+  /** Serialized form of {@link UnknownCharset}. */
+  private static final byte CHARSET_UNKNOWN = 3;
+
+  /**
+   * The detected charset, may be null. Charsets are not serializable: It is
+   * written by name (see {@link #writeObject(ObjectOutputStream)}).
+   */
+  private transient Charset m_charset;
+
+  /** The confidence in [0.0 .. 1.0]. */
+  private final float m_confidence;
+
+  /** The amount of bytes the detector consumed. */
+  private final int m_bytesConsumed;
+
+  /** The detector that produced this result. */
+  private final ICodepageDetector m_detector;
+
+  /**
+   * Creates a result.
+   * <p>
+   * 
+   * @param charset
+   *          the detected charset, {@link UnknownCharset},
+   *          {@link UnsupportedCharset} or null.
+   * 
+   * @param confidence
+   *          the confidence in [0.0 .. 1.0].
+   * 
+   * @param bytesConsumed
+   *          the amount of bytes the detector consumed.
+   * 
+   * @param detector
+   *          the detector that produced this result.
+   * 
+   * @throws IllegalArgumentException
+   *           if the confidence is not in [0.0 .. 1.0].
+   */
+  public DetectionResult(final Charset charset, final float confidence, final int bytesConsumed,
+      final ICodepageDetector detector) throws IllegalArgumentException {
+    if (!(confidence >= NONE && confidence <= CERTAIN)) {
+      throw new IllegalArgumentException("Confidence has to be in [0.0 .. 1.0]: " + confidence);
+    }
+    this.m_charset = charset;
+    this.m_confidence = confidence;
+    this.m_bytesConsumed = bytesConsumed;
+    this.m_detector = detector;
+  }
+
+  /**
+   * Creates the result for a detector that only reports charsets: Detected
+   * charsets are {@link #CERTAIN}, everything else has the confidence
+   * {@link #NONE}.
+   * <p>
+   * 
+   * @param charset
+   *          the result of {@link ICodepageDetector#detectCodepage(java.nio.ByteBuffer)}.
+   * 
+   * @param bytesConsumed
+   *          the amount of bytes the detector consumed.
+   * 
+   * @param detector
+   *          the detector that produced the charset.
+   * 
+   * @return the result for a detector that only reports charsets.
+   */
+  public static DetectionResult valueOf(final Charset charset, final int bytesConsumed,
+      final ICodepageDetector detector) {
+    return new DetectionResult(charset, DetectionResult.isDetected(charset) ? CERTAIN : NONE,
+        bytesConsumed, detector);
+  }
+
+  /**
+   * Returns true if the given charset is a detection result that is neither
+   * null, {@link UnknownCharset} nor an {@link UnsupportedCharset}.
+   * <p>
+   * 
+   * @param charset
+   *          a detection result.
+   * 
+   * @return true if the given charset is a detected and supported charset.
+   */
+  public static boolean isDetected(final Charset charset) {
+    boolean result = false;
+    if (charset != null) {
+      if (charset != UnknownCharset.getInstance()) {
+        if (charset instanceof UnsupportedCharset) {
+          // TODO: Debug logging: found illegal charset tag or
+          // encoding declaration.
+        } else {
+          result = true;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the amount of bytes the detector consumed.
+   * <p>
+   * 
+   * @return the amount of bytes the detector consumed.
+   */
+  public int getBytesConsumed() {
+    return this.m_bytesConsumed;
+  }
+
+  /**
+   * Returns the detected charset.
+   * <p>
+   * 
+   * @return the detected charset, {@link UnknownCharset},
+   *         {@link UnsupportedCharset} or null.
+   */
+  public Charset getCharset() {
+    return this.m_charset;
+  }
+
+  /**
+   * Returns the confidence in [0.0 .. 1.0].
+   * <p>
+   * 
+   * @return the confidence in [0.0 .. 1.0].
+   */
+  public float getConfidence() {
+    return this.m_confidence;
+  }
+
+  /**
+   * Returns the detector that produced this result.
+   * <p>
+   * 
+   * @return the detector that produced this result.
+   */
+  public ICodepageDetector getDetector() {
+    return this.m_detector;
+  }
+
+  /**
+   * Returns true if a supported charset was detected.
+   * <p>
+   * 
+   * @return true if a supported charset was detected.
+   * 
+   * @see #isDetected(Charset)
+   */
+  public boolean isDetected() {
+    return DetectionResult.isDetected(this.m_charset);
+  }
+
+  /**
+   * Resolves the charset written by {@link #writeObject(ObjectOutputStream)}.
+   * A charset that is not supported by this virtual machine is read as
+   * {@link UnsupportedCharset}.
+   * <p>
+   * 
+   * @param in
+   *          the stream to read from.
+   * 
+   * @throws IOException
+   *           if reading fails.
+   * 
+   * @throws ClassNotFoundException
+   *           if a class of a serialized field is missing.
+   */
+  private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    byte kind = in.readByte();
+    switch (kind) {
+      case CHARSET_NULL:
+        this.m_charset = null;
+        break;
+      case CHARSET_SUPPORTED:
+        String name = in.readUTF();
+        try {
+          this.m_charset = Charset.forName(name);
+        } catch (IllegalArgumentException e) {
+          this.m_charset = UnsupportedCharset.forName(name);
+        }
+        break;
+      case CHARSET_UNSUPPORTED:
+        this.m_charset = UnsupportedCharset.forName(in.readUTF());
+        break;
+      case CHARSET_UNKNOWN:
+        this.m_charset = UnknownCharset.getInstance();
+        break;
+      default:
+        throw new InvalidObjectException("Unknown charset kind: " + kind);
+    }
+  }
+
+  /**
+   * Writes the charset by name as charsets are not serializable.
+   * <p>
+   * 
+   * @param out
+   *          the stream to write to.
+   * 
+   * @throws IOException
+   *           if writing fails.
+   */
+  private void writeObject(final ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    if (this.m_charset == null) {
+      out.writeByte(CHARSET_NULL);
+    } else if (this.m_charset == UnknownCharset.getInstance()) {
+      out.writeByte(CHARSET_UNKNOWN);
+    } else if (this.m_charset instanceof UnsupportedCharset) {
+      out.writeByte(CHARSET_UNSUPPORTED);
+      out.writeUTF(this.m_charset.displayName());
+    } else {
+      out.writeByte(CHARSET_SUPPORTED);
+      out.writeUTF(this.m_charset.name());
+    }
+  }
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    StringBuffer ret = new StringBuffer();
+    ret.append(this.m_charset == null ? "null" : this.m_charset.name());
+    ret.append(" (confidence: ");
+    ret.append(this.m_confidence);
+    ret.append(", bytes: ");
+    ret.append(this.m_bytesConsumed);
+    ret.append(", detector: ");
+    ret.append(this.m_detector == null ? "null" : this.m_detector.getClass().getName());
+    ret.append(")");
+    return ret.toString();
+  }
+}
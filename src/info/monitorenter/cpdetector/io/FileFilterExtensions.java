@@ -93,17 +93,31 @@ public final class FileFilterExtensions implements FileFilter {
 	 * @see java.io.FileFilter#accept(java.io.File)
 	 */
 	public boolean accept(File pathname) {
+		return this.accept(pathname.getName());
+	}
+
+	/**
+	 * Like {@link #accept(File)} but for the plain name of a file (without 
+	 * directories), so directory listings may be filtered before any 
+	 * <code>File</code> instance is created. 
+	 * 
+	 * @param fileName the name of the file without directories. 
+	 * @return true if the name ends with one of the configured extensions. 
+	 */
+	public boolean accept(String fileName) {
 		boolean ret = false;
-		// search for extension without dot. 
-		StringTokenizer tokenizer = new StringTokenizer(pathname.getAbsolutePath(), ".");
-		String extension = "no.txt"; // a dot, because verify will not allow these tokens: won't accept, if no extension in pathname.
-		while (tokenizer.hasMoreElements()) {
-			extension = tokenizer.nextToken();
-		}
-		for (int i = this.m_extensions.length - 1; i >= 0; i--) {
-			if (this.m_extensions[i].equals(extension)) {
-				ret = true;
-				break;
+		// search for extension without dot: won't accept, if no extension in the name. 
+		if (fileName.indexOf('.') != -1) {
+			StringTokenizer tokenizer = new StringTokenizer(fileName, ".");
+			String extension = null;
+			while (tokenizer.hasMoreElements()) {
+				extension = tokenizer.nextToken();
+			}
+			for (int i = this.m_extensions.length - 1; i >= 0; i--) {
+				if (this.m_extensions[i].equals(extension)) {
+					ret = true;
+					break;
+				}
 			}
 		}
 		return ret;
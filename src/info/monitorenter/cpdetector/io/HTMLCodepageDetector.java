@@ -48,7 +48,9 @@ package info.monitorenter.cpdetector.io;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
 
 /**
  * 
@@ -100,6 +102,20 @@ public class HTMLCodepageDetector extends AbstractCodepageDetector {
         return delegate.compareTo(o);
     }
 
+    /**
+     * 
+     */
+    public ISamplingStrategy getSamplingStrategy() {
+        return delegate.getSamplingStrategy();
+    }
+
+    /**
+     * 
+     */
+    public void setSamplingStrategy(final ISamplingStrategy samplingStrategy) {
+        delegate.setSamplingStrategy(samplingStrategy);
+    }
+
     /**
      * 
      */
@@ -107,6 +123,44 @@ public class HTMLCodepageDetector extends AbstractCodepageDetector {
         return delegate.detectCodepage(in, length);
     }
 
+    /**
+     * 
+     */
+    public Charset detectCodepage(final ByteBuffer buffer) throws IOException {
+        return delegate.detectCodepage(buffer);
+    }
+
+    /**
+     * 
+     */
+    public Charset detectCodepage(final Path path) throws IOException {
+        return delegate.detectCodepage(path);
+    }
+
+    /**
+     * 
+     */
+    public DetectionResult detect(final ByteBuffer buffer) throws IOException {
+        return delegate.detect(buffer);
+    }
+
+    /**
+     * 
+     */
+    public DetectionResult detect(final Path path) throws IOException {
+        return delegate.detect(path);
+    }
+
+    /**
+     * Delegates to the internal {@link ParsingDetector}.
+     * <p>
+     * 
+     * @see info.monitorenter.cpdetector.io.ICodepageDetector#newSession()
+     */
+    public IDetectionSession newSession() {
+        return delegate.newSession();
+    }
+
     /**
      * 
      */
@@ -0,0 +1,105 @@
+/*
+ * 
+ *  HeadTailSamplingStrategy.java  cpdetector
+ *  samples the head and the tail of documents.
+ *  Copyright (C) Achim Westermann, created on 17.10.2026, 11:37:40
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ * 
+ * The contents of this collection are subject to the Mozilla Public License Version 
+ * 1.1 (the "License"); you may not use this file except in compliance with 
+ * the License. You may obtain a copy of the License at 
+ * http://www.mozilla.org/MPL/
+ * 
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ * 
+ * The Original Code is the cpDetector code in [sub] packages info.monitorenter and 
+ * cpdetector. 
+ * 
+ * The Initial Developer of the Original Code is
+ * Achim Westermann <achim.westermann@gmx.de>.
+ * 
+ * Portions created by the Initial Developer are Copyright (c) 2007 
+ * the Initial Developer. All Rights Reserved.
+ * 
+ * Contributor(s):
+ * 
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ * 
+ * ***** END LICENSE BLOCK ***** * 
+ *  
+ * If you modify or optimize the code in a useful way please let me know.
+ * Achim.Westermann@gmx.de
+ */
+package info.monitorenter.cpdetector.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Samples the head and the tail of a seekable document.
+ * <p>
+ * Three quarters of the budget are taken from the head (byte order marks and
+ * charset declarations), the rest from the end of the document. This catches
+ * documents that start with plain ASCII (e.g. markup or a license header) but
+ * contain non - ASCII text later on.
+ * <p>
+ * 
+ * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+ */
+public class HeadTailSamplingStrategy extends AbstractSamplingStrategy {
+
+  /** Generated <code>serialVersionUID</code>. */
+  private static final long serialVersionUID = -1794025363158462739L;
+
+  /**
+   * Creates an instance with the {@link ISamplingStrategy#DEFAULT_BUDGET}.
+   */
+  public HeadTailSamplingStrategy() {
+    this(ISamplingStrategy.DEFAULT_BUDGET);
+  }
+
+  /**
+   * Creates an instance with the given budget.
+   * <p>
+   * 
+   * @param budget
+   *          the maximum amount of bytes of a sample.
+   */
+  public HeadTailSamplingStrategy(final int budget) {
+    super(budget);
+  }
+
+  /**
+   * @see info.monitorenter.cpdetector.io.AbstractSamplingStrategy#sampleLarge(java.nio.ByteBuffer)
+   */
+  @Override
+  protected ByteBuffer sampleLarge(final ByteBuffer document) {
+    int budget = this.getBudget();
+    int tail = budget / 4;
+    int head = budget - tail;
+    return AbstractSamplingStrategy.gather(document, new int[] {0, document.remaining() - tail },
+        new int[] {head, tail });
+  }
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return "head and tail " + this.getBudget() + " bytes";
+  }
+}
@@ -46,12 +46,19 @@
  */
 package info.monitorenter.cpdetector.io;
 
+import info.monitorenter.io.ByteBufferInputStream;
+
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.io.Serializable;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
@@ -120,4 +127,176 @@ public interface ICodepageDetector extends Serializable, Comparable {
    *          detection (chardet) more hints to guess. 
    */
   public Charset detectCodepage(InputStream in, int length) throws IOException;
+
+  /**
+   * <p>
+   * Detects the codepage of the document specified by the given URL like
+   * {@link #detectCodepage(URL)} without blocking the caller: The document is
+   * read on the executor of this detector.
+   * </p>
+   * <p>
+   * The returned future completes with the result of
+   * {@link #detectCodepage(URL)} or exceptionally with its
+   * {@link IOException}. Cancelling the future does not interrupt a read in
+   * progress.
+   * </p>
+   * <p>
+   * The default implementation runs {@link #detectCodepage(URL)} on
+   * {@link AbstractCodepageDetector#getDefaultAsyncExecutor()}.
+   * </p>
+   * 
+   * @param url
+   *          the document to detect.
+   * 
+   * @return the future result.
+   */
+  public default CompletableFuture<Charset> detectCodepageAsync(URL url) {
+    return AbstractCodepageDetector.submit(AbstractCodepageDetector.getDefaultAsyncExecutor(),
+        new AbstractCodepageDetector.AsyncDetection(this, url, null, 0));
+  }
+
+  /**
+   * <p>
+   * Detects the codepage of the given stream like
+   * {@link #detectCodepage(InputStream, int)} without blocking the caller:
+   * The stream is read on the executor of this detector and must not be used
+   * by the caller until the returned future is complete.
+   * </p>
+   * <p>
+   * The default implementation runs
+   * {@link #detectCodepage(InputStream, int)} on
+   * {@link AbstractCodepageDetector#getDefaultAsyncExecutor()}.
+   * </p>
+   * 
+   * @param in
+   *          An InputStream for the document.
+   * 
+   * @param length
+   *          The amount of bytes to take into account.
+   * 
+   * @return the future result.
+   */
+  public default CompletableFuture<Charset> detectCodepageAsync(InputStream in, int length) {
+    return AbstractCodepageDetector.submit(AbstractCodepageDetector.getDefaultAsyncExecutor(),
+        new AbstractCodepageDetector.AsyncDetection(this, null, in, length));
+  }
+
+  /**
+   * <p>
+   * Detects the charset encoding of the remaining bytes of the given buffer.
+   * This is the entry point for callers that already hold the document (or
+   * the head of it) in memory, e.g. as <code>byte[]</code> (see
+   * {@link ByteBuffer#wrap(byte[])}) or in a direct buffer.
+   * </p>
+   * <p>
+   * Implementations must not modify the content of the buffer nor its
+   * position, limit or mark (use absolute access or
+   * {@link ByteBuffer#duplicate()}). Therefore the same buffer may be passed
+   * to several detectors in a row. The buffer may be read-only.
+   * </p>
+   * <p>
+   * The default implementation streams the remaining bytes to
+   * {@link #detectCodepage(InputStream, int)} so that detectors written
+   * against the stream based contract keep working unchanged.
+   * </p>
+   * 
+   * @param buffer
+   *          the bytes from position to limit are taken into account.
+   * 
+   * @exception IOException
+   *              thrown if an underlying implementation fails.
+   * 
+   * @return the detected charset, {@link UnknownCharset} or
+   *         {@link UnsupportedCharset} if it was not possible to detect a
+   *         supported charset.
+   */
+  public default Charset detectCodepage(ByteBuffer buffer) throws IOException {
+    return this.detectCodepage(new ByteBufferInputStream(buffer), buffer.remaining());
+  }
+
+  /**
+   * <p>
+   * Like {@link #detectCodepage(ByteBuffer)} but reports the confidence of the
+   * result, the amount of bytes consumed and the detector that produced the
+   * result.
+   * </p>
+   * <p>
+   * The default implementation reports the result of
+   * {@link #detectCodepage(ByteBuffer)} with full confidence if a supported
+   * charset was detected (see
+   * {@link DetectionResult#valueOf(Charset, int, ICodepageDetector)}).
+   * </p>
+   * 
+   * @param buffer
+   *          the bytes from position to limit are taken into account.
+   * 
+   * @exception IOException
+   *              thrown if an underlying implementation fails.
+   * 
+   * @return the detection result, never null.
+   */
+  public default DetectionResult detect(ByteBuffer buffer) throws IOException {
+    return DetectionResult.valueOf(this.detectCodepage(buffer), buffer.remaining(), this);
+  }
+
+  /**
+   * <p>
+   * Detects the charset encoding of the local file specified by the given
+   * path.
+   * </p>
+   * <p>
+   * This is the preferred way for documents in the local file system:
+   * {@link AbstractCodepageDetector} memory - maps the file and runs
+   * {@link #detectCodepage(ByteBuffer)} on the mapped region without the
+   * overhead of URL handlers, streams and copies into heap buffers.
+   * </p>
+   * <p>
+   * The default implementation streams the head of the file (at most
+   * {@link ISamplingStrategy#DEFAULT_BUDGET} bytes) to
+   * {@link #detectCodepage(InputStream, int)}.
+   * </p>
+   * 
+   * @param path
+   *          the file to detect.
+   * 
+   * @exception IOException
+   *              thrown to indicate that it is was not possible to open the
+   *              given file.
+   * 
+   * @return the detected charset, {@link UnknownCharset} or
+   *         {@link UnsupportedCharset} if it was not possible to detect a
+   *         supported charset.
+   */
+  public default Charset detectCodepage(Path path) throws IOException {
+    int length = (int) Math.min(Files.size(path), ISamplingStrategy.DEFAULT_BUDGET);
+    InputStream in = new BufferedInputStream(Files.newInputStream(path));
+    try {
+      return this.detectCodepage(in, length);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * <p>
+   * Starts a push - style detection: The bytes of a document are fed to the
+   * returned session chunk by chunk as they arrive (e.g. from the network)
+   * and the result is taken when the document ends or the session signals
+   * that it has decided early.
+   * </p>
+   * <p>
+   * Sessions honour the same budget as the pull - style methods: Bytes fed
+   * beyond it are ignored.
+   * </p>
+   * <p>
+   * The default implementation buffers up to
+   * {@link ISamplingStrategy#DEFAULT_BUDGET} bytes and hands them to
+   * {@link #detect(ByteBuffer)} when the session is finished.
+   * </p>
+   * 
+   * @return a new session for a single document.
+   */
+  public default IDetectionSession newSession() {
+    return new AbstractCodepageDetector.BufferingSession(this, ISamplingStrategy.DEFAULT_BUDGET);
+  }
 }
@@ -0,0 +1,138 @@
+/*
+ * 
+ *  IDetectionSession.java  cpdetector
+ *  a push-style detection of a single document.
+ *  Copyright (C) Achim Westermann, created on 18.10.2026, 11:02:50
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ * 
+ * The contents of this collection are subject to the Mozilla Public License Version 
+ * 1.1 (the "License"); you may not use this file except in compliance with 
+ * the License. You may obtain a copy of the License at 
+ * http://www.mozilla.org/MPL/
+ * 
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ * 
+ * The Original Code is the cpDetector code in [sub] packages info.monitorenter and 
+ * cpdetector. 
+ * 
+ * The Initial Developer of the Original Code is
+ * Achim Westermann <achim.westermann@gmx.de>.
+ * 
+ * Portions created by the Initial Developer are Copyright (c) 2007 
+ * the Initial Developer. All Rights Reserved.
+ * 
+ * Contributor(s):
+ * 
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ * 
+ * ***** END LICENSE BLOCK ***** * 
+ *  
+ * If you modify or optimize the code in a useful way please let me know.
+ * Achim.Westermann@gmx.de
+ */
+package info.monitorenter.cpdetector.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * A push - style detection of a single document obtained from
+ * {@link ICodepageDetector#newSession()}: The bytes of the document are fed
+ * chunk by chunk in the order they arrive, no more than the chunk at hand has
+ * to be buffered by the caller.
+ * </p>
+ * <p>
+ * Usage:
+ * 
+ * <pre>
+ * IDetectionSession session = detector.newSession();
+ * while (!session.isDone() &amp;&amp; (chunk = nextChunk()) != null) {
+ *   session.feed(chunk);
+ * }
+ * Charset charset = session.finish().getCharset();
+ * </pre>
+ * 
+ * </p>
+ * <p>
+ * Sessions are not thread-safe: A session is fed by a single thread (or with
+ * external synchronization).
+ * </p>
+ * 
+ * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+ */
+public interface IDetectionSession {
+
+  /**
+   * Feeds the given bytes of the document.
+   * <p>
+   * 
+   * @param chunk
+   *          the next bytes of the document, the array is not retained.
+   * 
+   * @param offset
+   *          the index of the first byte in the array.
+   * 
+   * @param length
+   *          the amount of bytes.
+   * 
+   * @throws IOException
+   *           if the detection fails.
+   * 
+   * @throws IllegalStateException
+   *           if the session is finished.
+   */
+  public void feed(byte[] chunk, int offset, int length) throws IOException, IllegalStateException;
+
+  /**
+   * Feeds the remaining bytes of the given buffer, its position is moved to
+   * its limit.
+   * <p>
+   * 
+   * @param chunk
+   *          the next bytes of the document, the buffer is not retained.
+   * 
+   * @throws IOException
+   *           if the detection fails.
+   * 
+   * @throws IllegalStateException
+   *           if the session is finished.
+   */
+  public void feed(ByteBuffer chunk) throws IOException, IllegalStateException;
+
+  /**
+   * Returns true if further bytes would not change the result: The result is
+   * decided or the budget is consumed. Feeding may stop then.
+   * <p>
+   * 
+   * @return true if further bytes would not change the result.
+   */
+  public boolean isDone();
+
+  /**
+   * Ends the document and returns the result. Subsequent calls return the
+   * same result.
+   * <p>
+   * 
+   * @return the result of the detection, never null.
+   * 
+   * @throws IOException
+   *           if the detection fails.
+   */
+  public DetectionResult finish() throws IOException;
+}
@@ -0,0 +1,98 @@
+/*
+ * 
+ *  ISamplingStrategy.java  cpdetector
+ *  the policy for choosing the bytes that detection looks at.
+ *  Copyright (C) Achim Westermann, created on 17.10.2026, 11:20:05
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ * 
+ * The contents of this collection are subject to the Mozilla Public License Version 
+ * 1.1 (the "License"); you may not use this file except in compliance with 
+ * the License. You may obtain a copy of the License at 
+ * http://www.mozilla.org/MPL/
+ * 
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ * 
+ * The Original Code is the cpDetector code in [sub] packages info.monitorenter and 
+ * cpdetector. 
+ * 
+ * The Initial Developer of the Original Code is
+ * Achim Westermann <achim.westermann@gmx.de>.
+ * 
+ * Portions created by the Initial Developer are Copyright (c) 2007 
+ * the Initial Developer. All Rights Reserved.
+ * 
+ * Contributor(s):
+ * 
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ * 
+ * ***** END LICENSE BLOCK ***** * 
+ *  
+ * If you modify or optimize the code in a useful way please let me know.
+ * Achim.Westermann@gmx.de
+ */
+package info.monitorenter.cpdetector.io;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * A policy that decides which bytes of a document are taken into account for
+ * codepage detection.
+ * <p>
+ * Detection cost should not grow with the size of the document: Every
+ * strategy has a budget, the maximum amount of bytes of a sample. Sources
+ * that can only be read sequentially (streams, URLs) are sampled by reading
+ * the first {@link #getBudget()} bytes. Seekable sources (local files that are
+ * memory - mapped or documents that are in memory completely) are sampled by
+ * {@link #sample(ByteBuffer)} which may pick arbitrary regions of the
+ * document.
+ * <p>
+ * 
+ * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+ * 
+ * @see CodepageDetectorProxy#setSamplingStrategy(ISamplingStrategy)
+ * @see CodepageDetectorChain.Builder#samplingStrategy(ISamplingStrategy)
+ */
+public interface ISamplingStrategy extends Serializable {
+
+  /** The default budget: 64 KB. */
+  public static final int DEFAULT_BUDGET = 64 * 1024;
+
+  /**
+   * Returns the maximum amount of bytes of a sample.
+   * <p>
+   * 
+   * @return the maximum amount of bytes of a sample.
+   */
+  public int getBudget();
+
+  /**
+   * Returns the sample of the given seekable document.
+   * <p>
+   * The result contains at most {@link #getBudget()} remaining bytes. It may
+   * be a view of the given buffer (sharing content) or a copy of several
+   * regions. The given buffer is not modified.
+   * <p>
+   * 
+   * @param document
+   *          the complete document from position to limit.
+   * 
+   * @return the sample of the given seekable document.
+   */
+  public ByteBuffer sample(ByteBuffer document);
+}
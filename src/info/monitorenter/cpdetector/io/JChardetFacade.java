@@ -49,8 +49,10 @@ import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
-import java.nio.charset.UnsupportedCharsetException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import org.mozilla.intl.chardet.nsDetector;
 import org.mozilla.intl.chardet.nsICharsetDetectionObserver;
@@ -68,10 +70,16 @@ import org.mozilla.intl.chardet.nsPSMDetector;
  * uses the frequency statistics of characters in a given language." </i>( <a
  * href="http://www.i18nfaq.com/chardet.html#8">source of description </a>).
  * <p>
- * It is a singleton for performance reasons (buffer allocation). Because it is
- * stateful (internal buffer) the method
- * {@link #detectCodepage(InputStream, int)}(delegated to by
- * {@link #detectCodepage(URL)}has to be synchronized.
+ * It is a singleton. The state of the underlying
+ * {@link org.mozilla.intl.chardet.nsDetector} (and the read buffer) is
+ * borrowed from a small pool for the duration of a single detection: Every
+ * detection owns a detector, observer and buffer that are handed back for
+ * reuse afterwards. Therefore {@link #detectCodepage(InputStream, int)}
+ * (delegated to by {@link #detectCodepage(URL)}) is not synchronized and
+ * concurrent detections scale with the amount of processors. The state is not
+ * bound to threads: Short lived (e.g. virtual) threads reuse it as well. The
+ * pool keeps at most four idle states (about 5 KB each) per processor, more
+ * concurrent detections create additional state that is discarded afterwards.
  * <p>
  * 
  * 
@@ -80,32 +88,28 @@ import org.mozilla.intl.chardet.nsPSMDetector;
  */
 public final class JChardetFacade
     extends AbstractCodepageDetector implements nsICharsetDetectionObserver {
-  private static JChardetFacade instance = null;
+  private static final JChardetFacade instance = new JChardetFacade();
 
-  private static nsDetector det;
-
-  private byte[] buf = new byte[4096];
-
-  private Charset codpage = null;
+  /**
+   * The idle detection states, borrowed by {@link #acquire()} and handed back
+   * by {@link #release(Session)}.
+   */
+  private static final BlockingQueue<Session> idle = new ArrayBlockingQueue<Session>(
+      4 * Runtime.getRuntime().availableProcessors());
 
-  private boolean m_guessing = true;
+  private volatile boolean m_guessing = true;
 
-  private int amountOfVerifiers = 0;
+  private final int amountOfVerifiers;
 
   /**
    * 
    */
   private JChardetFacade() {
     super();
-    det = new nsDetector(nsPSMDetector.ALL);
-    det.Init(this);
-    this.amountOfVerifiers = det.getProbableCharsets().length;
+    this.amountOfVerifiers = new nsDetector(nsPSMDetector.ALL).getProbableCharsets().length;
   }
 
   public static JChardetFacade getInstance() {
-    if (instance == null) {
-      instance = new JChardetFacade();
-    }
     return instance;
   }
 
@@ -114,40 +118,173 @@ public final class JChardetFacade
    * 
    * @see cpdetector.io.ICodepageDetector#detectCodepage(java.io.InputStream)
    */
-  public synchronized Charset detectCodepage(InputStream in, int length) throws IOException {
-    this.Reset();
-    int len;
-    int read = 0;
-    boolean done = false;
-    boolean isAscii = true;
-    Charset ret = null;
-    do {
-      len = in.read(buf, 0, Math.min(buf.length, length - read));
-      if (len > 0) {
-        read += len;
+  public Charset detectCodepage(InputStream in, int length) throws IOException {
+    Session session = acquire();
+    try {
+      nsDetector det = session.m_detector;
+      byte[] buf = session.m_buf;
+      int len;
+      int read = 0;
+      boolean done = false;
+      do {
+        len = in.read(buf, 0, Math.min(buf.length, length - read));
+        if (len > 0) {
+          read += len;
+        }
+        if (!done)
+          done = det.DoIt(buf, len, false);
+      } while (len > 0 && !done);
+      det.DataEnd();
+      return this.result(session, read).getCharset();
+    } finally {
+      release(session);
+    }
+  }
+
+  /**
+   * Feeds the remaining bytes of the given buffer to the detector of the
+   * detection state borrowed for this call.
+   * <p>
+   * 
+   * @see #detect(ByteBuffer)
+   * @see info.monitorenter.cpdetector.io.ICodepageDetector#detectCodepage(java.nio.ByteBuffer)
+   */
+  public Charset detectCodepage(final ByteBuffer buffer) throws IOException {
+    return this.detect(buffer).getCharset();
+  }
+
+  /**
+   * Feeds the remaining bytes of the given buffer to the detector of the
+   * detection state borrowed for this call and scores the outcome.
+   * <p>
+   * If the buffer is backed by an array that starts at the position of the
+   * buffer (e.g. a buffer obtained by {@link ByteBuffer#wrap(byte[])}) the
+   * array is handed to the detector directly. Else (direct or read-only
+   * buffers) the bytes are transferred in chunks through the internal read
+   * buffer of that detection state.
+   * <p>
+   * A charset reported by the detector is {@link DetectionResult#CERTAIN}. A
+   * guess is scored with the reciprocal of the amount of charsets that could
+   * not be excluded.
+   * <p>
+   * 
+   * @see info.monitorenter.cpdetector.io.ICodepageDetector#detect(java.nio.ByteBuffer)
+   */
+  public DetectionResult detect(final ByteBuffer buffer) throws IOException {
+    Session session = acquire();
+    try {
+      nsDetector det = session.m_detector;
+      int consumed = 0;
+      if (buffer.hasArray() && buffer.arrayOffset() + buffer.position() == 0) {
+        consumed = buffer.remaining();
+        det.DoIt(buffer.array(), consumed, false);
+      } else {
+        ByteBuffer source = buffer.duplicate();
+        byte[] buf = session.m_buf;
+        int len;
+        boolean done = false;
+        while (source.hasRemaining() && !done) {
+          len = Math.min(buf.length, source.remaining());
+          source.get(buf, 0, len);
+          consumed += len;
+          done = det.DoIt(buf, len, false);
+        }
       }
-      if (!done)
-        done = det.DoIt(buf, len, false);
-    } while (len > 0 && !done);
-    det.DataEnd();
-    if (this.codpage == null) {
+      det.DataEnd();
+      return this.result(session, consumed);
+    } finally {
+      release(session);
+    }
+  }
+
+  /**
+   * Borrows an idle detection state (or creates a new one if none is idle).
+   * <p>
+   * 
+   * @return a reset detection state owned by the caller until it is passed to
+   *         {@link #release(Session)}.
+   */
+  private static Session acquire() {
+    Session ret = idle.poll();
+    if (ret == null) {
+      ret = new Session();
+    } else {
+      ret.reset();
+    }
+    return ret;
+  }
+
+  /**
+   * Hands back the given detection state for reuse. It is dropped if enough
+   * states are idle already.
+   * <p>
+   * 
+   * @param session
+   *          the state obtained by {@link #acquire()}.
+   */
+  private static void release(final Session session) {
+    idle.offer(session);
+  }
+
+  /**
+   * Returns a session that feeds the chunks to its own jchardet detector as
+   * they arrive: It is done as soon as jchardet is sure.
+   * <p>
+   * 
+   * @see info.monitorenter.cpdetector.io.ICodepageDetector#newSession()
+   */
+  public IDetectionSession newSession() {
+    return new ChardetSession(this.getSamplingStrategy().getBudget());
+  }
+
+  /**
+   * Evaluates the detection state of the given session after
+   * {@link nsDetector#DataEnd()}.
+   * <p>
+   * 
+   * @param session
+   *          the session that finished detection.
+   * 
+   * @param consumed
+   *          the amount of bytes that were fed to the detector.
+   * 
+   * @return the reported charset or a guess (if guessing) or the
+   *         {@link UnknownCharset}.
+   */
+  private DetectionResult result(final Session session, final int consumed) {
+    DetectionResult ret;
+    if (session.m_codepage == null) {
       if (this.m_guessing) {
-        ret = guess();
+        ret = guess(session.m_detector, consumed);
       } else {
-        ret = UnknownCharset.getInstance();
+        ret = new DetectionResult(UnknownCharset.getInstance(), DetectionResult.NONE, consumed,
+            this);
       }
     } else {
-      ret = this.codpage;
+      ret = new DetectionResult(session.m_codepage, DetectionResult.CERTAIN, consumed, this);
     }
     return ret;
-
   }
 
   /**
+   * Picks the first supported charset of those the given detector could not
+   * exclude (in the order of {@link nsDetector#getProbableCharsets()}).
+   * <p>
+   * 
+   * @param det
+   *          the detector that finished detection without a notification.
    * 
+   * @param consumed
+   *          the amount of bytes that were fed to the detector.
+   * 
+   * @return the guess scored with the reciprocal of the amount of candidates,
+   *         US-ASCII (no candidate excluded: only ASCII bytes seen) as certain
+   *         and an {@link UnsupportedCharset} for the first candidate without
+   *         confidence if none of the candidates is supported.
    */
-  private Charset guess() {
+  private DetectionResult guess(final nsDetector det, final int consumed) {
     Charset ret = null;
+    float confidence;
     String[] possibilities = det.getProbableCharsets();
     /*
      * Detect US-ASCII by the fact, that no exclusion of any Charset was
@@ -155,36 +292,55 @@ public final class JChardetFacade
      */
     if (possibilities.length == this.amountOfVerifiers) {
       ret = Charset.forName("US-ASCII");
+      confidence = DetectionResult.CERTAIN;
     } else {
       // He should better return an Array of length zero!
       String check = possibilities[0];
       if (check.equalsIgnoreCase("nomatch")) {
         ret = UnknownCharset.getInstance();
+        confidence = DetectionResult.NONE;
       } else {
         for (int i = 0; ret == null && i < possibilities.length; i++) {
           try {
             ret = Charset.forName(possibilities[i]);
-          } catch (UnsupportedCharsetException uce) {
-            ret = UnsupportedCharset.forName(possibilities[i]);
+          } catch (IllegalArgumentException unsupported) {
+            // unsupported or illegal name: try the next candidate
           }
         }
+        if (ret == null) {
+          ret = UnsupportedCharset.forName(check);
+          confidence = DetectionResult.NONE;
+        } else {
+          confidence = 1.0f / possibilities.length;
+        }
       }
     }
-    return ret;
-
+    return new DetectionResult(ret, confidence, consumed, this);
   }
 
- /**
-  * 
-  * @see org.mozilla.intl.chardet.nsICharsetDetectionObserver#Notify(java.lang.String)
-  */
+  /**
+   * Does nothing: Every detection state observes its own
+   * {@link org.mozilla.intl.chardet.nsDetector}, so jchardet never reports to
+   * the facade.
+   * 
+   * @deprecated The facade is no detection observer anymore, it only keeps
+   *             this method for binary compatibility.
+   * 
+   * @see org.mozilla.intl.chardet.nsICharsetDetectionObserver#Notify(java.lang.String)
+   */
   public void Notify(final String charset) {
-    this.codpage = Charset.forName(charset);
+    // nothing to do: the detection states are the observers
   }
 
+  /**
+   * Does nothing: The detection states are reset whenever they are borrowed
+   * for a detection.
+   * 
+   * @deprecated The facade keeps no detection state of its own, it only keeps
+   *             this method for binary compatibility.
+   */
   public void Reset() {
-    det.Reset();
-    this.codpage = null;
+    // nothing to do: the detection states are reset when borrowed
   }
 
   /**
@@ -220,7 +376,99 @@ public final class JChardetFacade
    * @param guessing
    *          The guessing to set.
    */
-  public synchronized void setGuessing(final boolean guessing) {
+  public void setGuessing(final boolean guessing) {
     this.m_guessing = guessing;
   }
-}
\ No newline at end of file
+
+  /**
+   * The detection state of a single thread: an own detector with this
+   * instance as observer and the read buffer.
+   * <p>
+   */
+  private static final class Session implements nsICharsetDetectionObserver {
+
+    /** The detector, observed by this instance. */
+    final nsDetector m_detector;
+
+    /** The read buffer. */
+    final byte[] m_buf = new byte[4096];
+
+    /** The charset reported by the detector, null if none reported (yet). */
+    Charset m_codepage = null;
+
+    /**
+     * Creates a fresh detector observed by this instance.
+     */
+    Session() {
+      this.m_detector = new nsDetector(nsPSMDetector.ALL);
+      this.m_detector.Init(this);
+    }
+
+    /**
+     * @see org.mozilla.intl.chardet.nsICharsetDetectionObserver#Notify(java.lang.String)
+     */
+    public void Notify(final String charset) {
+      this.m_codepage = Charset.forName(charset);
+    }
+
+    /**
+     * Prepares this instance for a new detection.
+     */
+    void reset() {
+      this.m_detector.Reset();
+      this.m_codepage = null;
+    }
+  }
+
+  /**
+   * Feeds the chunks of a single document to its own jchardet detector.
+   * <p>
+   * 
+   * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+   */
+  private final class ChardetSession extends AbstractDetectionSession {
+
+    /** The detector and observer of this document. */
+    private final Session m_session = new Session();
+
+    /** True if jchardet does not need more bytes. */
+    private boolean m_done = false;
+
+    ChardetSession(final int budget) {
+      super(budget);
+    }
+
+    /**
+     * @see info.monitorenter.cpdetector.io.AbstractDetectionSession#update(java.nio.ByteBuffer)
+     */
+    protected void update(final ByteBuffer chunk) {
+      nsDetector det = this.m_session.m_detector;
+      if (chunk.hasArray() && chunk.arrayOffset() + chunk.position() == 0) {
+        this.m_done = det.DoIt(chunk.array(), chunk.remaining(), false);
+      } else {
+        byte[] buf = this.m_session.m_buf;
+        int len;
+        while (chunk.hasRemaining() && !this.m_done) {
+          len = Math.min(buf.length, chunk.remaining());
+          chunk.get(buf, 0, len);
+          this.m_done = det.DoIt(buf, len, false);
+        }
+      }
+    }
+
+    /**
+     * @see info.monitorenter.cpdetector.io.AbstractDetectionSession#isDecided()
+     */
+    protected boolean isDecided() {
+      return this.m_done || this.m_session.m_codepage != null;
+    }
+
+    /**
+     * @see info.monitorenter.cpdetector.io.AbstractDetectionSession#result()
+     */
+    protected DetectionResult result() {
+      this.m_session.m_detector.DataEnd();
+      return JChardetFacade.this.result(this.m_session, this.getConsumed());
+    }
+  }
+}
@@ -47,27 +47,26 @@
  */
 package info.monitorenter.cpdetector.io;
 
-import info.monitorenter.cpdetector.io.parser.EncodingLexer;
-import info.monitorenter.cpdetector.io.parser.EncodingParser;
-import info.monitorenter.io.LimitedInputStream;
+import info.monitorenter.cpdetector.io.parser.EncodingScanner;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.UnsupportedCharsetException;
 
-import antlr.ANTLRException;
-
 /**
  * <p>
  * A <a target="_blank"
  * href="http://wiki.cs.uiuc.edu/PatternStories/FacadePattern">Fa�ade</a> that
- * internally uses an <a href="http://www.antlr.org">ANTLR </a>- based parser /
- * lexer.<br>
+ * internally uses the byte-level {@link EncodingScanner}. The scanner
+ * recognizes the grammar of the <a href="http://www.antlr.org">ANTLR </a>-
+ * based parser / lexer in package
+ * <code>info.monitorenter.cpdetector.io.parser</code> without decoding the
+ * input or creating objects besides the charset name found.<br>
  * </p>
  * <p>
- * The underlying lexer is more a filter: It does not verify lexical correctness
+ * The underlying scanner is more a filter: It does not verify lexical correctness
  * by the means of matching a defined order of tokens, but just filters m_out
  * certain tokens. By now the following tokens are filtered: <table border="0"
  * id="userstyle"> <colgroup> <col width="20%"/> <col width="30%"/> <col
@@ -121,25 +120,52 @@ public class ParsingDetector
     this.m_verbose = verbose;
   }
 
-  /*
-   * (non-Javadoc)
+  /**
+   * Reads the first <code>length</code> bytes of the given stream - but not
+   * more than the budget of the sampling strategy - and parses them.
+   * <p>
+   * The scanner works on a buffer, so the bytes are read before scanning: The
+   * budget keeps callers that pass a large length (like
+   * <code>Integer.MAX_VALUE</code> for "the whole stream") from buffering
+   * the whole stream. Declarations are expected in the head of a document.
+   * <p>
    * 
    * @see cpdetector.io.ICodepageDetector#detectCodepage(java.io.InputStream)
    */
   public Charset detectCodepage(final InputStream in, final int length) throws IOException {
-    EncodingLexer lexer;
-    EncodingParser parser;
+    return this.parse(AbstractCodepageDetector.readWindow(in, Math.min(length, this.getSamplingStrategy()
+        .getBudget())));
+  }
+
+  /**
+   * Parses the remaining bytes of the given buffer in place.
+   * <p>
+   * 
+   * @see info.monitorenter.cpdetector.io.ICodepageDetector#detectCodepage(java.nio.ByteBuffer)
+   */
+  public Charset detectCodepage(final ByteBuffer buffer) throws IOException {
+    return this.parse(buffer);
+  }
+
+  /**
+   * Scans the remaining bytes of the given buffer for a charset declaration.
+   * <p>
+   * 
+   * @param buffer
+   *          the bytes to scan, not modified.
+   * 
+   * @return the charset found, an {@link UnsupportedCharset} for declarations
+   *         of charsets unknown to the VM or the {@link UnknownCharset}.
+   */
+  private Charset parse(final ByteBuffer buffer) {
     Charset charset = null;
     String csName = null;
-    InputStream limitedInputStream = new LimitedInputStream(in, length);
     if (this.m_verbose) {
       System.out
           .println("  parsing for html-charset/xml-encoding attribute with codepage: US-ASCII");
     }
     try {
-      lexer = new EncodingLexer(new InputStreamReader(limitedInputStream, "US-ASCII"));
-      parser = new EncodingParser(lexer);
-      csName = parser.htmlDocument();
+      csName = EncodingScanner.scan(buffer);
       if (csName != null) {
         // TODO: prepare document with illegal value, then test: Decide to catch
         // exception and return
@@ -152,10 +178,6 @@ public class ParsingDetector
       } else {
         charset = UnknownCharset.getInstance();
       }
-    } catch (ANTLRException ae) {
-      if (this.m_verbose) {
-        System.out.println("  ANTLR parser exception: " + ae.getMessage());
-      }
     } catch (Exception deepdown) {
       if (this.m_verbose) {
         System.out.println("  Decoding Exception: " + deepdown.getMessage()
@@ -0,0 +1,139 @@
+/*
+ * 
+ *  StridedSamplingStrategy.java  cpdetector
+ *  samples evenly spaced windows of documents.
+ *  Copyright (C) Achim Westermann, created on 17.10.2026, 11:45:02
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ * 
+ * The contents of this collection are subject to the Mozilla Public License Version 
+ * 1.1 (the "License"); you may not use this file except in compliance with 
+ * the License. You may obtain a copy of the License at 
+ * http://www.mozilla.org/MPL/
+ * 
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ * 
+ * The Original Code is the cpDetector code in [sub] packages info.monitorenter and 
+ * cpdetector. 
+ * 
+ * The Initial Developer of the Original Code is
+ * Achim Westermann <achim.westermann@gmx.de>.
+ * 
+ * Portions created by the Initial Developer are Copyright (c) 2007 
+ * the Initial Developer. All Rights Reserved.
+ * 
+ * Contributor(s):
+ * 
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ * 
+ * ***** END LICENSE BLOCK ***** * 
+ *  
+ * If you modify or optimize the code in a useful way please let me know.
+ * Achim.Westermann@gmx.de
+ */
+package info.monitorenter.cpdetector.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Samples evenly spaced windows of a seekable document.
+ * <p>
+ * The budget is split into windows of equal size. The first window starts at
+ * the head of the document (byte order marks and charset declarations), the
+ * last one ends at the end of the document and the others are spread evenly
+ * in between. This gives the statistical detectors the best coverage of large
+ * documents with mixed content.
+ * <p>
+ * 
+ * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+ */
+public class StridedSamplingStrategy extends AbstractSamplingStrategy {
+
+  /** Generated <code>serialVersionUID</code>. */
+  private static final long serialVersionUID = 8326512080771265340L;
+
+  /** The default amount of windows. */
+  public static final int DEFAULT_WINDOWS = 8;
+
+  /** The amount of windows. */
+  private final int m_windows;
+
+  /**
+   * Creates an instance with the {@link ISamplingStrategy#DEFAULT_BUDGET} and
+   * {@link #DEFAULT_WINDOWS} windows.
+   */
+  public StridedSamplingStrategy() {
+    this(ISamplingStrategy.DEFAULT_BUDGET, StridedSamplingStrategy.DEFAULT_WINDOWS);
+  }
+
+  /**
+   * Creates an instance with the given budget and amount of windows.
+   * <p>
+   * 
+   * @param budget
+   *          the maximum amount of bytes of a sample.
+   * 
+   * @param windows
+   *          the amount of windows the budget is split into.
+   * 
+   * @throws IllegalArgumentException
+   *           if windows is lower than 2 or bigger than the budget.
+   */
+  public StridedSamplingStrategy(final int budget, final int windows)
+      throws IllegalArgumentException {
+    super(budget);
+    if (windows < 2 || windows > budget) {
+      throw new IllegalArgumentException("Amount of windows has to be in [2.." + budget + "]: "
+          + windows);
+    }
+    this.m_windows = windows;
+  }
+
+  /**
+   * Returns the amount of windows the budget is split into.
+   * <p>
+   * 
+   * @return the amount of windows the budget is split into.
+   */
+  public int getWindows() {
+    return this.m_windows;
+  }
+
+  /**
+   * @see info.monitorenter.cpdetector.io.AbstractSamplingStrategy#sampleLarge(java.nio.ByteBuffer)
+   */
+  @Override
+  protected ByteBuffer sampleLarge(final ByteBuffer document) {
+    int window = this.getBudget() / this.m_windows;
+    long stride = (long) (document.remaining() - window);
+    int[] offsets = new int[this.m_windows];
+    int[] lengths = new int[this.m_windows];
+    for (int i = 0; i < this.m_windows; i++) {
+      offsets[i] = (int) (stride * i / (this.m_windows - 1));
+      lengths[i] = window;
+    }
+    return AbstractSamplingStrategy.gather(document, offsets, lengths);
+  }
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return this.m_windows + " windows of " + this.getBudget() / this.m_windows + " bytes";
+  }
+}
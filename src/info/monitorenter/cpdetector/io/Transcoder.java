@@ -0,0 +1,462 @@
+/*
+ * 
+ *  Transcoder.java  cpdetector
+ *  transforms documents from one charset to another.
+ *  Copyright (C) Achim Westermann, created on 17.10.2026, 20:36:12
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ * 
+ * The contents of this collection are subject to the Mozilla Public License Version 
+ * 1.1 (the "License"); you may not use this file except in compliance with 
+ * the License. You may obtain a copy of the License at 
+ * http://www.mozilla.org/MPL/
+ * 
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ * 
+ * The Original Code is the cpDetector code in [sub] packages info.monitorenter and 
+ * cpdetector. 
+ * 
+ * The Initial Developer of the Original Code is
+ * Achim Westermann <achim.westermann@gmx.de>.
+ * 
+ * Portions created by the Initial Developer are Copyright (c) 2007 
+ * the Initial Developer. All Rights Reserved.
+ * 
+ * Contributor(s):
+ * 
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ * 
+ * ***** END LICENSE BLOCK ***** * 
+ *  
+ * If you modify or optimize the code in a useful way please let me know.
+ * Achim.Westermann@gmx.de
+ */
+package info.monitorenter.cpdetector.io;
+
+import info.monitorenter.util.FileUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * Transforms documents from one charset to another with a {@link CharsetDecoder} and a
+ * {@link CharsetEncoder} over reusable buffers.
+ * </p>
+ * <p>
+ * Two cases skip decoding and encoding:
+ * <ul>
+ * <li>If source and target charset are equal, the bytes are copied unchanged (unless malformed
+ * input is to be reported, which requires decoding).</li>
+ * <li>If both charsets are ASCII compatible (ASCII characters are the same single bytes and the
+ * charset has no shift states, like UTF-8, ISO-8859-X or windows-125X), every buffer that only
+ * contains ASCII is written unchanged: Pure ASCII documents are copied.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * Malformed input and unmappable characters are replaced, ignored or reported with a
+ * {@link java.nio.charset.CharacterCodingException} according to the configured
+ * {@link CodingErrorAction}.
+ * </p>
+ * <p>
+ * Instances are not thread-safe because of the reused buffers: Use one per thread.
+ * </p>
+ * 
+ * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+ */
+public final class Transcoder {
+
+  /** The default size of the buffers in bytes (and chars). */
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * Multi-byte charsets that are ASCII compatible: ASCII bytes never occur within a multi-byte
+   * sequence and there are no shift states.
+   */
+  private static final Set<String> ASCII_MULTIBYTE = new HashSet<String>(Arrays.asList(new String[] {
+      "UTF-8", "GB18030", "GBK", "GB2312", "EUC-JP", "EUC-KR", "x-EUC-TW", "Big5", "Big5-HKSCS",
+      "x-windows-949", "x-windows-950" }));
+
+  /** Cache for {@link #isAsciiCompatible(Charset)} by charset name. */
+  private static final Map<String, Boolean> ASCII_COMPATIBLE = new ConcurrentHashMap<String, Boolean>();
+
+  /** The bytes read. */
+  private final ByteBuffer m_in;
+
+  /** The decoded chars. */
+  private final CharBuffer m_chars;
+
+  /** The encoded bytes. */
+  private final ByteBuffer m_out;
+
+  /** What to do on malformed input or unmappable characters. */
+  private final CodingErrorAction m_errorAction;
+
+  /**
+   * Creates a transcoder with buffers of the {@link #DEFAULT_BUFFER_SIZE} that replaces malformed
+   * input and unmappable characters (like <code>InputStreamReader</code> and
+   * <code>OutputStreamWriter</code>).
+   */
+  public Transcoder() {
+    this(Transcoder.DEFAULT_BUFFER_SIZE, CodingErrorAction.REPLACE);
+  }
+
+  /**
+   * Creates a transcoder.
+   * <p>
+   * 
+   * @param bufferSize
+   *          the size of the buffers in bytes (and chars).
+   * 
+   * @param errorAction
+   *          what to do on malformed input or unmappable characters.
+   * 
+   * @throws IllegalArgumentException
+   *           if the buffer size is below 16 or the action is null.
+   */
+  public Transcoder(final int bufferSize, final CodingErrorAction errorAction)
+      throws IllegalArgumentException {
+    if (bufferSize < 16) {
+      throw new IllegalArgumentException("Argument bufferSize has to be at least 16: " + bufferSize);
+    }
+    if (errorAction == null) {
+      throw new IllegalArgumentException("Argument errorAction must not be null.");
+    }
+    this.m_in = ByteBuffer.allocate(bufferSize);
+    this.m_chars = CharBuffer.allocate(bufferSize);
+    this.m_out = ByteBuffer.allocate(bufferSize);
+    this.m_errorAction = errorAction;
+  }
+
+  /**
+   * Returns what is done on malformed input or unmappable characters.
+   * <p>
+   * 
+   * @return what is done on malformed input or unmappable characters.
+   */
+  public CodingErrorAction getErrorAction() {
+    return this.m_errorAction;
+  }
+
+  /**
+   * Transforms the given file to the given target file (which is created or overwritten).
+   * <p>
+   * 
+   * @param from
+   *          the file to read.
+   * 
+   * @param source
+   *          the charset of the file to read.
+   * 
+   * @param to
+   *          the file to write.
+   * 
+   * @param target
+   *          the charset of the file to write.
+   * 
+   * @throws IOException
+   *           if reading or writing fails or a
+   *           {@link java.nio.charset.CharacterCodingException} if the input is malformed or not
+   *           mappable and the error action is {@link CodingErrorAction#REPORT}.
+   */
+  public void transcode(final Path from, final Charset source, final Path to, final Charset target)
+      throws IOException {
+    FileChannel in = FileChannel.open(from, StandardOpenOption.READ);
+    try {
+      FileChannel out = FileChannel.open(to, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+      try {
+        if (this.isIdentity(source, target)) {
+          // the operating system may copy:
+          long size = in.size();
+          long position = 0;
+          while (position < size) {
+            position += in.transferTo(position, size - position, out);
+          }
+        } else {
+          this.transcode(in, source, out, target);
+        }
+      } finally {
+        out.close();
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Transforms the remaining bytes of the given buffer (e.g. a mapped document that was detected
+   * before) to the given output channel. The buffer is consumed, the channel is not closed.
+   * <p>
+   * 
+   * @param in
+   *          the bytes to transform.
+   * 
+   * @param source
+   *          the charset of the input.
+   * 
+   * @param out
+   *          the channel to write.
+   * 
+   * @param target
+   *          the charset of the output.
+   * 
+   * @throws IOException
+   *           if writing fails or a {@link java.nio.charset.CharacterCodingException} if the input
+   *           is malformed or not mappable and the error action is {@link CodingErrorAction#REPORT}.
+   */
+  public void transcode(final ByteBuffer in, final Charset source, final WritableByteChannel out,
+      final Charset target) throws IOException {
+    if (this.isIdentity(source, target)) {
+      Transcoder.write(in, out);
+    } else {
+      this.transcode(new BufferChannel(in), source, out, target);
+    }
+  }
+
+  /**
+   * Transforms the bytes of the given input channel to the given output channel. The channels are
+   * not closed.
+   * <p>
+   * 
+   * @param in
+   *          the channel to read until its end.
+   * 
+   * @param source
+   *          the charset of the input.
+   * 
+   * @param out
+   *          the channel to write.
+   * 
+   * @param target
+   *          the charset of the output.
+   * 
+   * @throws IOException
+   *           if reading or writing fails or a
+   *           {@link java.nio.charset.CharacterCodingException} if the input is malformed or not
+   *           mappable and the error action is {@link CodingErrorAction#REPORT}.
+   */
+  public void transcode(final ReadableByteChannel in, final Charset source,
+      final WritableByteChannel out, final Charset target) throws IOException {
+    this.m_in.clear();
+    this.m_chars.clear();
+    if (this.isIdentity(source, target)) {
+      while (in.read(this.m_in) != -1) {
+        this.m_in.flip();
+        Transcoder.write(this.m_in, out);
+        this.m_in.clear();
+      }
+      return;
+    }
+    CharsetDecoder decoder = source.newDecoder().onMalformedInput(this.m_errorAction)
+        .onUnmappableCharacter(this.m_errorAction);
+    CharsetEncoder encoder = target.newEncoder().onMalformedInput(this.m_errorAction)
+        .onUnmappableCharacter(this.m_errorAction);
+    boolean passAscii = Transcoder.isAsciiCompatible(source) && Transcoder.isAsciiCompatible(target);
+    boolean eof = false;
+    CoderResult result;
+    while (!eof) {
+      eof = Transcoder.fill(in, this.m_in);
+      this.m_in.flip();
+      if (passAscii && this.m_chars.position() == 0 && FileUtil.isAllASCII(this.m_in)) {
+        // no decoder input or encoder input pending, ASCII is the same in both charsets:
+        Transcoder.write(this.m_in, out);
+      } else {
+        do {
+          result = decoder.decode(this.m_in, this.m_chars, eof);
+          if (result.isError()) {
+            result.throwException();
+          }
+          this.encode(encoder, out, false);
+        } while (result.isOverflow());
+      }
+      this.m_in.compact();
+    }
+    // the decoder has to see the end of input even if the last buffer was passed unchanged:
+    this.m_in.flip();
+    do {
+      result = decoder.decode(this.m_in, this.m_chars, true);
+      if (result.isError()) {
+        result.throwException();
+      }
+      this.encode(encoder, out, false);
+    } while (result.isOverflow());
+    do {
+      result = decoder.flush(this.m_chars);
+      this.encode(encoder, out, !result.isOverflow());
+    } while (result.isOverflow());
+    do {
+      result = encoder.flush(this.m_out);
+      this.m_out.flip();
+      Transcoder.write(this.m_out, out);
+      this.m_out.clear();
+    } while (result.isOverflow());
+  }
+
+  /**
+   * Returns true if the given charset is ASCII compatible: ASCII characters are encoded as the same
+   * single bytes, multi-byte sequences start with a non-ASCII byte and there are no shift states.
+   * Buffers containing only ASCII bytes may be passed between two of these charsets unchanged.
+   * <p>
+   * 
+   * @param charset
+   *          the charset to test.
+   * 
+   * @return true if the given charset is ASCII compatible.
+   */
+  public static boolean isAsciiCompatible(final Charset charset) {
+    Boolean result = Transcoder.ASCII_COMPATIBLE.get(charset.name());
+    if (result == null) {
+      boolean compatible = false;
+      if (charset.canEncode()) {
+        try {
+          CharsetEncoder encoder = charset.newEncoder();
+          if (encoder.maxBytesPerChar() == 1.0f
+              || Transcoder.ASCII_MULTIBYTE.contains(charset.name())) {
+            byte[] ascii = new byte[128];
+            for (int i = 0; i < ascii.length; i++) {
+              ascii[i] = (byte) i;
+            }
+            String chars = new String(ascii, "US-ASCII");
+            compatible = Arrays.equals(ascii, chars.getBytes(charset))
+                && chars.equals(new String(ascii, charset));
+          }
+        } catch (IOException e) {
+          // US-ASCII is always supported.
+        } catch (UnsupportedOperationException e) {
+          // not compatible.
+        }
+      }
+      result = Boolean.valueOf(compatible);
+      Transcoder.ASCII_COMPATIBLE.put(charset.name(), result);
+    }
+    return result.booleanValue();
+  }
+
+  /**
+   * Returns true if the bytes may be copied unchanged.
+   */
+  private boolean isIdentity(final Charset source, final Charset target) {
+    return source.equals(target) && this.m_errorAction != CodingErrorAction.REPORT;
+  }
+
+  /**
+   * Encodes the decoded chars and writes the encoded bytes. Chars that cannot be encoded yet (a
+   * high surrogate at the end) are kept.
+   */
+  private void encode(final CharsetEncoder encoder, final WritableByteChannel out,
+      final boolean endOfInput) throws IOException {
+    this.m_chars.flip();
+    CoderResult result;
+    do {
+      result = encoder.encode(this.m_chars, this.m_out, endOfInput);
+      if (result.isError()) {
+        result.throwException();
+      }
+      this.m_out.flip();
+      Transcoder.write(this.m_out, out);
+      this.m_out.clear();
+    } while (result.isOverflow());
+    this.m_chars.compact();
+  }
+
+  /**
+   * Reads from the channel until the buffer is full or the end is reached.
+   * <p>
+   * 
+   * @return true if the end of the channel was reached.
+   */
+  private static boolean fill(final ReadableByteChannel in, final ByteBuffer buffer)
+      throws IOException {
+    boolean eof = false;
+    while (buffer.hasRemaining() && !eof) {
+      eof = in.read(buffer) == -1;
+    }
+    return eof;
+  }
+
+  /**
+   * Writes the remaining bytes of the buffer completely.
+   */
+  private static void write(final ByteBuffer buffer, final WritableByteChannel out)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+  }
+
+  /**
+   * Reads the remaining bytes of a buffer.
+   * <p>
+   * 
+   * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+   */
+  private static final class BufferChannel implements ReadableByteChannel {
+
+    /** The bytes to read. */
+    private final ByteBuffer m_buffer;
+
+    BufferChannel(final ByteBuffer buffer) {
+      this.m_buffer = buffer;
+    }
+
+    /**
+     * @see java.nio.channels.ReadableByteChannel#read(java.nio.ByteBuffer)
+     */
+    public int read(final ByteBuffer dst) {
+      int result = -1;
+      if (this.m_buffer.hasRemaining()) {
+        result = Math.min(dst.remaining(), this.m_buffer.remaining());
+        ByteBuffer chunk = this.m_buffer.duplicate();
+        chunk.limit(chunk.position() + result);
+        dst.put(chunk);
+        this.m_buffer.position(this.m_buffer.position() + result);
+      }
+      return result;
+    }
+
+    /**
+     * @see java.nio.channels.Channel#isOpen()
+     */
+    public boolean isOpen() {
+      return true;
+    }
+
+    /**
+     * @see java.nio.channels.Channel#close()
+     */
+    public void close() {
+      // nop
+    }
+  }
+}
@@ -0,0 +1,385 @@
+/*
+ * 
+ *  UTF8Detector.java  cpdetector
+ *  a table-driven validating detector for UTF-8.
+ *  Copyright (C) Achim Westermann, created on 17.10.2026, 15:22:40
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ * 
+ * The contents of this collection are subject to the Mozilla Public License Version 
+ * 1.1 (the "License"); you may not use this file except in compliance with 
+ * the License. You may obtain a copy of the License at 
+ * http://www.mozilla.org/MPL/
+ * 
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ * 
+ * The Original Code is the cpDetector code in [sub] packages info.monitorenter and 
+ * cpdetector. 
+ * 
+ * The Initial Developer of the Original Code is
+ * Achim Westermann <achim.westermann@gmx.de>.
+ * 
+ * Portions created by the Initial Developer are Copyright (c) 2007 
+ * the Initial Developer. All Rights Reserved.
+ * 
+ * Contributor(s):
+ * 
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ * 
+ * ***** END LICENSE BLOCK ***** * 
+ *  
+ * If you modify or optimize the code in a useful way please let me know.
+ * Achim.Westermann@gmx.de
+ */
+package info.monitorenter.cpdetector.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * <p>
+ * A detector that validates documents as UTF-8 in a single linear pass over
+ * their bytes. It answers definitive: UTF-8 if the document is well-formed
+ * UTF-8 (RFC 3629: no overlong forms, no surrogates, nothing above U+10FFFF)
+ * and contains at least one multi-byte sequence, the {@link UnknownCharset}
+ * otherwise.
+ * </p>
+ * <p>
+ * Documents that only contain ASCII bytes are not reported as UTF-8 because
+ * they are valid in almost every charset (see {@link ASCIIDetector}). A
+ * multi-byte sequence that is cut by the end of the inspected bytes is
+ * tolerated, as samples (see {@link ISamplingStrategy}) and length-limited
+ * streams may end anywhere.
+ * </p>
+ * <p>
+ * Validation is done by a deterministic finite automaton: Every byte is
+ * mapped to one of 12 classes by a 256-entry table and the next state is
+ * looked up in a transition table by the current state and that class.
+ * Between multi-byte sequences ASCII text is skipped 8 bytes at a time.
+ * Therefore this detector is cheap enough to be the first one of a chain and
+ * spares the multi-verifier state machine of {@link JChardetFacade} for the
+ * common case of UTF-8 without a byte order mark.
+ * </p>
+ * <p>
+ * It is a stateless singleton: The constructor is private. Use
+ * {@link #getInstance()}.
+ * </p>
+ * 
+ * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+ */
+public final class UTF8Detector
+    extends AbstractCodepageDetector {
+
+  /**
+   * Generated <code>serialVersionUID</code>.
+   */
+  private static final long serialVersionUID = -2319874437150981206L;
+
+  /** The singleton instance. */
+  private static final UTF8Detector instance = new UTF8Detector();
+
+  /** The charset reported for valid UTF-8 documents. */
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /**
+   * Mask for the most significant bit of every byte in a long (see
+   * {@link info.monitorenter.util.FileUtil#isAllASCII(ByteBuffer)}).
+   */
+  private static final long ASCII_MASK = 0x8080808080808080L;
+
+  /** The size of the chunks streams are read in. */
+  private static final int CHUNK = 8192;
+
+  /** The amount of byte classes (columns of {@link #TRANSITIONS}). */
+  private static final int CLASSES = 12;
+
+  /** State between sequences. */
+  private static final int ACCEPT = 0;
+
+  /** Sink state: the input is no UTF-8. */
+  private static final int REJECT = 1;
+
+  /**
+   * Flag or'ed to the state as soon as a multi-byte sequence has been
+   * completed.
+   */
+  private static final int MULTIBYTE = 0x10;
+
+  /** Masks the state without {@link #MULTIBYTE}. */
+  private static final int STATE = 0x0F;
+
+  /**
+   * The class of every byte value:
+   * <table border="0">
+   * <tr><th>Class</th><th>Bytes</th><th>Meaning</th></tr>
+   * <tr><td>0</td><td>00..7F</td><td>ASCII</td></tr>
+   * <tr><td>1</td><td>80..8F</td><td>continuation</td></tr>
+   * <tr><td>2</td><td>90..9F</td><td>continuation</td></tr>
+   * <tr><td>3</td><td>A0..BF</td><td>continuation</td></tr>
+   * <tr><td>4</td><td>C0, C1, F5..FF</td><td>never valid</td></tr>
+   * <tr><td>5</td><td>C2..DF</td><td>lead of 2 bytes</td></tr>
+   * <tr><td>6</td><td>E0</td><td>lead of 3 bytes, no overlong forms</td></tr>
+   * <tr><td>7</td><td>E1..EC, EE, EF</td><td>lead of 3 bytes</td></tr>
+   * <tr><td>8</td><td>ED</td><td>lead of 3 bytes, no surrogates</td></tr>
+   * <tr><td>9</td><td>F0</td><td>lead of 4 bytes, no overlong forms</td></tr>
+   * <tr><td>10</td><td>F1..F3</td><td>lead of 4 bytes</td></tr>
+   * <tr><td>11</td><td>F4</td><td>lead of 4 bytes, not above U+10FFFF</td></tr>
+   * </table>
+   */
+  private static final byte[] CLASS = new byte[256];
+
+  /**
+   * The next state indexed by <code>state * CLASSES + class</code>. States:
+   * <ol start="0">
+   * <li>{@link #ACCEPT}</li>
+   * <li>{@link #REJECT}</li>
+   * <li>1 continuation byte missing</li>
+   * <li>2 continuation bytes missing</li>
+   * <li>2 continuation bytes missing, next in A0..BF (after E0)</li>
+   * <li>2 continuation bytes missing, next in 80..9F (after ED)</li>
+   * <li>3 continuation bytes missing</li>
+   * <li>3 continuation bytes missing, next in 90..BF (after F0)</li>
+   * <li>3 continuation bytes missing, next in 80..8F (after F4)</li>
+   * </ol>
+   */
+  private static final byte[] TRANSITIONS = {
+      // 0: ACCEPT
+      0, 1, 1, 1, 1, 2, 4, 3, 5, 7, 6, 8,
+      // 1: REJECT
+      1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+      // 2: 1 missing
+      1, 0, 0, 0, 1, 1, 1, 1, 1, 1, 1, 1,
+      // 3: 2 missing
+      1, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1, 1,
+      // 4: 2 missing after E0
+      1, 1, 1, 2, 1, 1, 1, 1, 1, 1, 1, 1,
+      // 5: 2 missing after ED
+      1, 2, 2, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+      // 6: 3 missing
+      1, 3, 3, 3, 1, 1, 1, 1, 1, 1, 1, 1,
+      // 7: 3 missing after F0
+      1, 1, 3, 3, 1, 1, 1, 1, 1, 1, 1, 1,
+      // 8: 3 missing after F4
+      1, 3, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1 };
+
+  static {
+    UTF8Detector.classify(0x00, 0x7F, 0);
+    UTF8Detector.classify(0x80, 0x8F, 1);
+    UTF8Detector.classify(0x90, 0x9F, 2);
+    UTF8Detector.classify(0xA0, 0xBF, 3);
+    UTF8Detector.classify(0xC0, 0xC1, 4);
+    UTF8Detector.classify(0xC2, 0xDF, 5);
+    UTF8Detector.classify(0xE0, 0xE0, 6);
+    UTF8Detector.classify(0xE1, 0xEC, 7);
+    UTF8Detector.classify(0xED, 0xED, 8);
+    UTF8Detector.classify(0xEE, 0xEF, 7);
+    UTF8Detector.classify(0xF0, 0xF0, 9);
+    UTF8Detector.classify(0xF1, 0xF3, 10);
+    UTF8Detector.classify(0xF4, 0xF4, 11);
+    UTF8Detector.classify(0xF5, 0xFF, 4);
+  }
+
+  /**
+   * Singleton constructor.
+   */
+  private UTF8Detector() {
+    super();
+  }
+
+  /**
+   * Returns the singleton instance.
+   * <p>
+   * 
+   * @return the singleton instance.
+   */
+  public static ICodepageDetector getInstance() {
+    return UTF8Detector.instance;
+  }
+
+  /**
+   * Validates the first <code>length</code> bytes of the given stream. The
+   * stream is read in chunks and reading stops as soon as the input is known
+   * not to be UTF-8.
+   * <p>
+   * 
+   * @see info.monitorenter.cpdetector.io.ICodepageDetector#detectCodepage(java.io.InputStream,
+   *      int)
+   */
+  public Charset detectCodepage(final InputStream in, final int length) throws IOException {
+    byte[] chunk = new byte[Math.max(0, Math.min(UTF8Detector.CHUNK, length))];
+    ByteBuffer buffer = ByteBuffer.wrap(chunk);
+    int state = UTF8Detector.ACCEPT;
+    int remaining = length;
+    int read;
+    while (remaining > 0 && (state & UTF8Detector.STATE) != UTF8Detector.REJECT) {
+      read = in.read(chunk, 0, Math.min(chunk.length, remaining));
+      if (read == -1) {
+        break;
+      }
+      remaining -= read;
+      state = UTF8Detector.run(buffer, 0, read, state);
+    }
+    return UTF8Detector.charset(state);
+  }
+
+  /**
+   * Validates the remaining bytes of the given buffer in place.
+   * <p>
+   * 
+   * @see info.monitorenter.cpdetector.io.ICodepageDetector#detectCodepage(java.nio.ByteBuffer)
+   */
+  public Charset detectCodepage(final ByteBuffer buffer) throws IOException {
+    return UTF8Detector.charset(UTF8Detector.run(buffer, buffer.position(), buffer.limit(),
+        UTF8Detector.ACCEPT));
+  }
+
+  /**
+   * Validates the remaining bytes of the given buffer in place. A detected
+   * UTF-8 is {@link DetectionResult#CERTAIN}.
+   * <p>
+   * 
+   * @see info.monitorenter.cpdetector.io.ICodepageDetector#detect(java.nio.ByteBuffer)
+   */
+  public DetectionResult detect(final ByteBuffer buffer) throws IOException {
+    return DetectionResult.valueOf(this.detectCodepage(buffer), buffer.remaining(), this);
+  }
+
+  /**
+   * Returns a session that runs the automaton over the chunks as they are
+   * fed: It is done as soon as a byte sequence is no UTF-8.
+   * <p>
+   * 
+   * @see info.monitorenter.cpdetector.io.ICodepageDetector#newSession()
+   */
+  public IDetectionSession newSession() {
+    return new Session(this.getSamplingStrategy().getBudget());
+  }
+
+  /**
+   * Runs the automaton over the given range of the buffer.
+   * <p>
+   * 
+   * @param buffer
+   *          the bytes to validate, accessed absolute.
+   * 
+   * @param from
+   *          the index of the first byte to validate.
+   * 
+   * @param to
+   *          the index behind the last byte to validate.
+   * 
+   * @param start
+   *          the state (with {@link #MULTIBYTE} flag) to start in.
+   * 
+   * @return the state (with {@link #MULTIBYTE} flag) after the last byte or
+   *         {@link #REJECT} as soon as the input is known not to be UTF-8.
+   */
+  private static int run(final ByteBuffer buffer, final int from, final int to, final int start) {
+    int state = start & UTF8Detector.STATE;
+    int multibyte = start & UTF8Detector.MULTIBYTE;
+    int i = from;
+    int next;
+    int wordEnd = to - 7;
+    while (i < to) {
+      if (state == UTF8Detector.ACCEPT) {
+        // ASCII fast-skip:
+        while (i < wordEnd && (buffer.getLong(i) & UTF8Detector.ASCII_MASK) == 0) {
+          i += 8;
+        }
+        if (i == to) {
+          break;
+        }
+      }
+      next = UTF8Detector.TRANSITIONS[state * UTF8Detector.CLASSES
+          + UTF8Detector.CLASS[buffer.get(i) & 0xFF]];
+      if (next == UTF8Detector.REJECT) {
+        state = UTF8Detector.REJECT;
+        multibyte = 0;
+        break;
+      }
+      if (next == UTF8Detector.ACCEPT && state != UTF8Detector.ACCEPT) {
+        multibyte = UTF8Detector.MULTIBYTE;
+      }
+      state = next;
+      i++;
+    }
+    return state | multibyte;
+  }
+
+  /**
+   * Returns UTF-8 for a final state that completed a multi-byte sequence
+   * without rejecting (a trailing incomplete sequence is tolerated) or the
+   * {@link UnknownCharset}.
+   */
+  private static Charset charset(final int state) {
+    Charset result = UnknownCharset.getInstance();
+    if ((state & UTF8Detector.MULTIBYTE) != 0 && (state & UTF8Detector.STATE) != UTF8Detector.REJECT) {
+      result = UTF8Detector.UTF_8;
+    }
+    return result;
+  }
+
+  /**
+   * Assigns the given class to the given range of byte values.
+   */
+  private static void classify(final int from, final int to, final int byteClass) {
+    for (int i = from; i <= to; i++) {
+      UTF8Detector.CLASS[i] = (byte) byteClass;
+    }
+  }
+
+  /**
+   * Runs the automaton over the fed chunks, the state is carried from chunk
+   * to chunk.
+   * <p>
+   * 
+   * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+   */
+  private final class Session extends AbstractDetectionSession {
+
+    /** The state of the automaton and the multi-byte flag. */
+    private int m_state = UTF8Detector.ACCEPT;
+
+    Session(final int budget) {
+      super(budget);
+    }
+
+    /**
+     * @see info.monitorenter.cpdetector.io.AbstractDetectionSession#update(java.nio.ByteBuffer)
+     */
+    protected void update(final ByteBuffer chunk) {
+      this.m_state = UTF8Detector.run(chunk, chunk.position(), chunk.limit(), this.m_state);
+    }
+
+    /**
+     * @see info.monitorenter.cpdetector.io.AbstractDetectionSession#isDecided()
+     */
+    protected boolean isDecided() {
+      return (this.m_state & UTF8Detector.STATE) == UTF8Detector.REJECT;
+    }
+
+    /**
+     * @see info.monitorenter.cpdetector.io.AbstractDetectionSession#result()
+     */
+    protected DetectionResult result() {
+      return DetectionResult.valueOf(UTF8Detector.charset(this.m_state), this.getConsumed(),
+          UTF8Detector.this);
+    }
+  }
+}
@@ -45,17 +45,6 @@
  */
 package info.monitorenter.cpdetector.io;
 
-import info.monitorenter.cpdetector.io.AbstractCodepageDetector;
-import info.monitorenter.cpdetector.io.ICodepageDetector;
-import info.monitorenter.cpdetector.io.UnknownCharset;
-
-import java.io.BufferedInputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
-import java.nio.charset.Charset;
-
-
 /**
  * <p>
  * This detector identifies byte order marks of the following codepages to give a 100 % deterministic result in case of
@@ -66,16 +55,17 @@ import java.nio.charset.Charset;
  * <table border="1">
  * <tr>
  * <td>00 00 FE FF</td>
- * <td>UCS-4, big-endian machine (1234 order)</td>
+ * <td>UTF-32, big-endian machine (1234 order)</td>
  * </tr>
  * <tr>
  * <td>FF FE 00 00</td>
- * <td>UCS-4,little-endian machine (4321 order)</td>
+ * <td>UTF-32, little-endian machine (4321 order)</td>
  * </tr>
  * <tr>
  * <td>00 00 FF FE</td>
  * <td>UCS-4, unusual octet order (2143)</td>
  * </tr>
+ * <tr>
  * <td>FE FF 00 00</td>
  * <td>UCS-4, unusual octet order (3412)</td>
  * </tr>
@@ -106,17 +96,16 @@ import java.nio.charset.Charset;
  * F.1 Detection Without External Encoding Information </a>.
  * </p>
  * 
- * This implementation does the same as <code>{@link ByteOrderMarkDetector}</code> but with a different
- * read strategy (read 4 bytes at once) and elseif blocks. Would
- * be great to have a performance comparison. Maybe the read of 4 bytes in a row combined with the
- * switch could make that other implementation the winner.
+ * This implementation is a <code>{@link ByteOrderMarkDetector}</code>: It looks up the marks in the
+ * table of {@link ByteOrderMark}, which also covers UTF-7, UTF-EBCDIC, SCSU, BOCU-1 and GB18030. It
+ * is kept as singleton for configurations that refer to it.
  * <p>
  * 
  * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
  * 
  * @version $Revision: 1.2 $
  */
-public class UnicodeDetector extends AbstractCodepageDetector {
+public class UnicodeDetector extends ByteOrderMarkDetector {
     private static ICodepageDetector instance;
 
     /**
@@ -133,44 +122,4 @@ public class UnicodeDetector extends AbstractCodepageDetector {
         return instance;
     }
 
-    /*
-     * (non-Javadoc) It is assumed that the inputstream is at the start of the file or String (in order to read the
-     * BOM).
-     * 
-     * @see cpdetector.io.ICodepageDetector#detectCodepage(java.io.InputStream, int)
-     * 
-     */
-    public Charset detectCodepage(InputStream in, int length) throws IOException {
-        byte[] bom = new byte[4]; // Get the byte-order mark, if there is one
-        in.read(bom, 0, 4);
-        // Unicode formats => read BOM
-        byte b = (byte)0xEF;
-        if (bom[0] == (byte)0x00 && bom[1] == (byte)0x00 && bom[2] == (byte)0xFE
-                && bom[2] == (byte)0xFF) // utf-32BE
-            return Charset.forName("UTF-32BE");
-        if (bom[0] == (byte)0xFF && bom[1] == (byte)0xFE && bom[2] == (byte)0x00
-                && bom[2] == (byte)0x00) // utf-32BE
-            return Charset.forName("UTF-32LE");
-        if (bom[0] == (byte)0xEF && bom[1] == (byte)0xBB && bom[2] == (byte)0xBF) // utf-8
-            return Charset.forName("UTF-8");
-        if (bom[0] == (byte)0xff && bom[1] == (byte)0xfe) // ucs-2le, ucs-4le, and ucs-16le
-            return Charset.forName("UTF-16LE");
-        if (bom[0] == (byte)0xfe && bom[1] == (byte)0xff) // utf-16 and ucs-2
-            return Charset.forName("UTF-16BE");
-        if (bom[0] == (byte)0 && bom[1] == (byte)0 && bom[2] == (byte)0xfe && bom[3] == (byte)0xff) // ucs-4
-            return Charset.forName("UCS-4");
-        return UnknownCharset.getInstance();
-    }
-
-    /**
-     * @see info.monitorenter.cpdetector.io.ICodepageDetector#detectCodepage(java.net.URL)
-     */
-    public Charset detectCodepage(final URL url) throws IOException {
-        Charset result;
-        BufferedInputStream in = new BufferedInputStream(url.openStream());
-        result = this.detectCodepage(in, Integer.MAX_VALUE);
-        in.close();
-        return result;
-    }
-
 }
@@ -51,9 +51,8 @@ package info.monitorenter.cpdetector.io;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharsetEncoder;
-import java.util.HashMap;
 import java.util.Locale;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p>
@@ -75,9 +74,9 @@ public class UnsupportedCharset
 
   /**
    * Singleton cache for the unsupported charsets (no need to instanciate the same unsupported
-   * charset again and again).
+   * charset again and again). Concurrent as detectors may run in parallel.
    */
-  private static Map<String, Charset> singletons = new HashMap<String, Charset>();
+  private static ConcurrentHashMap<String, Charset> singletons = new ConcurrentHashMap<String, Charset>();
 
   /**
    * Singleton constructor.
@@ -88,13 +87,17 @@ public class UnsupportedCharset
    */
   private UnsupportedCharset(String name) {
     super("unsupported", null);
+    this.m_name = name;
   }
 
   public static Charset forName(String name) {
     Charset ret = (Charset) singletons.get(name);
     if (ret == null) {
       ret = new UnsupportedCharset(name);
-      UnsupportedCharset.singletons.put(name, ret);
+      Charset raced = UnsupportedCharset.singletons.putIfAbsent(name, ret);
+      if (raced != null) {
+        ret = raced;
+      }
     }
     return ret;
   }
@@ -0,0 +1,466 @@
+/*
+ * 
+ *  EncodingScanner.java  cpdetector
+ *  a byte-level scanner for html-charset / xml-encoding declarations.
+ *  Copyright (C) Achim Westermann, created on 17.10.2026, 14:05:12
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ * 
+ * The contents of this collection are subject to the Mozilla Public License Version 
+ * 1.1 (the "License"); you may not use this file except in compliance with 
+ * the License. You may obtain a copy of the License at 
+ * http://www.mozilla.org/MPL/
+ * 
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ * 
+ * The Original Code is the cpDetector code in [sub] packages info.monitorenter and 
+ * cpdetector. 
+ * 
+ * The Initial Developer of the Original Code is
+ * Achim Westermann <achim.westermann@gmx.de>.
+ * 
+ * Portions created by the Initial Developer are Copyright (c) 2007 
+ * the Initial Developer. All Rights Reserved.
+ * 
+ * Contributor(s):
+ * 
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ * 
+ * ***** END LICENSE BLOCK ***** * 
+ *  
+ * If you modify or optimize the code in a useful way please let me know.
+ * Achim.Westermann@gmx.de
+ */
+package info.monitorenter.cpdetector.io.parser;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * A hand-written byte-level scanner that recognizes the same declarations as
+ * the <a href="http://www.antlr.org">ANTLR </a>- generated
+ * {@link EncodingLexer} / {@link EncodingParser} pair (see
+ * <code>charsetParser.g</code>):
+ * </p>
+ * <ul>
+ * <li><em>META_CONTENT_TYPE</em>:
+ * <tt>'&lt;' "meta" "http-equiv" '=' '"'? "content-type" '"'? "content" '=' '"'? (LETTER|DIGIT|'/')* ';' "charset" '=' <b>(LETTER|DIGIT|'-'|'_')*</b> '"'?</tt>
+ * </li>
+ * <li><em>XML_ENCODING_DECL</em>:
+ * <tt>"&lt;?xml" ("version" '=' Q DIGIT '.' DIGIT Q)? "encoding" '=' Q <b>IDENTIFIER</b> Q</tt>
+ * </li>
+ * </ul>
+ * <p>
+ * Matching is case-insensitive and a single spacing (<code>' '</code>,
+ * <code>'\n'</code> or <code>"\r\n"</code>) is allowed after every element.
+ * The scanner also reproduces the filter behaviour of the generated lexer: If
+ * a declaration fails to match, scanning restarts behind the offending
+ * character (not behind the start of the failed declaration). Therefore both
+ * implementations find the same declaration in every document.
+ * </p>
+ * <p>
+ * In contrast to the generated lexer the scanner works directly on the bytes
+ * of a {@link ByteBuffer} with absolute access: It neither decodes the input
+ * nor modifies the buffer state and the only object it creates is the
+ * resulting charset name.
+ * </p>
+ * 
+ * @author <a href="mailto:Achim.Westermann@gmx.de">Achim Westermann </a>
+ */
+public final class EncodingScanner {
+
+  /** Returned by {@link #at(ByteBuffer, int, int)} behind the limit. */
+  private static final int EOF = -1;
+
+  /** Literal "meta" in lower case. */
+  private static final byte[] META = ascii("meta");
+
+  /** Literal "http-equiv" in lower case. */
+  private static final byte[] HTTP_EQUIV = ascii("http-equiv");
+
+  /** Literal "content-type" in lower case. */
+  private static final byte[] CONTENT_TYPE = ascii("content-type");
+
+  /** Literal "content" in lower case. */
+  private static final byte[] CONTENT = ascii("content");
+
+  /** Literal "charset" in lower case. */
+  private static final byte[] CHARSET = ascii("charset");
+
+  /** Literal "&lt;?xml" in lower case. */
+  private static final byte[] XML = ascii("<?xml");
+
+  /** Literal "version" in lower case. */
+  private static final byte[] VERSION = ascii("version");
+
+  /** Literal "encoding" in lower case. */
+  private static final byte[] ENCODING = ascii("encoding");
+
+  /**
+   * Utility class constructor.
+   */
+  private EncodingScanner() {
+    // nop
+  }
+
+  /**
+   * Scans the remaining bytes of the given buffer for the first html-charset
+   * or xml-encoding declaration and returns the declared charset name.
+   * <p>
+   * 
+   * @param buffer
+   *          the bytes from position to limit are scanned. Not modified.
+   * 
+   * @return the declared charset name in the case it was written or null if
+   *         no declaration was found.
+   */
+  public static String scan(final ByteBuffer buffer) {
+    String result = null;
+    int limit = buffer.limit();
+    int i = buffer.position();
+    int match;
+    while (i < limit) {
+      if (buffer.get(i) != '<') {
+        i++;
+        continue;
+      }
+      int next = at(buffer, i + 1, limit);
+      if (next == 'm' || isSpacing(next)) {
+        match = matchMeta(buffer, i, limit);
+        if (match >= 0) {
+          int length = metaLength(buffer, match, limit);
+          if (length >= 0) {
+            result = metaName(buffer, match, length, limit);
+            break;
+          }
+          match = length;
+        }
+      } else if (next == '?') {
+        match = matchXml(buffer, i, limit);
+        if (match >= 0) {
+          result = xmlName(buffer, match, limit);
+          break;
+        }
+      } else {
+        i++;
+        continue;
+      }
+      // the lexer skips the character it failed on:
+      i = ~match + 1;
+    }
+    return result;
+  }
+
+  /**
+   * Matches the html-charset declaration up to the charset name.
+   * <p>
+   * 
+   * @return the index of the charset name or the bitwise complement of the
+   *         index of the offending character.
+   */
+  private static int matchMeta(final ByteBuffer buffer, final int start, final int limit) {
+    int i = spacing(buffer, start + 1, limit);
+    if (i >= 0) {
+      i = literal(buffer, i, limit, META);
+    }
+    if (i >= 0) {
+      i = literal(buffer, spacing(buffer, i, limit), limit, HTTP_EQUIV);
+    }
+    if (i >= 0) {
+      i = character(buffer, spacing(buffer, i, limit), limit, '=');
+    }
+    if (i >= 0) {
+      i = literal(buffer, quote(buffer, spacing(buffer, i, limit), limit), limit, CONTENT_TYPE);
+    }
+    if (i >= 0) {
+      i = literal(buffer, quote(buffer, spacing(buffer, i, limit), limit), limit, CONTENT);
+    }
+    if (i >= 0) {
+      i = character(buffer, spacing(buffer, i, limit), limit, '=');
+    }
+    if (i >= 0) {
+      i = quote(buffer, spacing(buffer, i, limit), limit);
+    }
+    // (LETTER|DIGIT|'/')*:
+    int c;
+    while (i >= 0 && (isLetterOrDigit(c = at(buffer, i, limit)) || c == '/')) {
+      i = spacing(buffer, i + 1, limit);
+    }
+    if (i >= 0) {
+      i = literal(buffer, spacing(buffer, character(buffer, i, limit, ';'), limit), limit, CHARSET);
+    }
+    if (i >= 0) {
+      i = character(buffer, spacing(buffer, i, limit), limit, '=');
+    }
+    if (i >= 0) {
+      i = spacing(buffer, i, limit);
+    }
+    return i;
+  }
+
+  /**
+   * Extracts the charset name of a matched html-charset declaration:
+   * Spacings between the characters of the name are dropped.
+   */
+  private static String metaName(final ByteBuffer buffer, final int start, final int length,
+      final int limit) {
+    char[] name = new char[length];
+    int i = start;
+    for (int n = 0; n < length; n++) {
+      name[n] = (char) buffer.get(i);
+      i = spacing(buffer, i + 1, limit);
+    }
+    return new String(name);
+  }
+
+  /**
+   * Matches <tt>(LETTER|DIGIT|'-'|'_')* '"'?</tt> of the html-charset
+   * declaration.
+   * <p>
+   * 
+   * @return the amount of characters in the charset name or the bitwise
+   *         complement of the index of the offending character.
+   */
+  private static int metaLength(final ByteBuffer buffer, final int start, final int limit) {
+    int i = start;
+    int length = 0;
+    int c;
+    while (i >= 0 && (isLetterOrDigit(c = at(buffer, i, limit)) || c == '-' || c == '_')) {
+      length++;
+      i = spacing(buffer, i + 1, limit);
+    }
+    if (i >= 0) {
+      i = quote(buffer, i, limit);
+    }
+    return (i >= 0) ? length : i;
+  }
+
+  /**
+   * Matches the xml-encoding declaration up to the encoding name and
+   * verifies the closing quote.
+   * <p>
+   * 
+   * @return the index of the encoding name or the bitwise complement of the
+   *         index of the offending character.
+   */
+  private static int matchXml(final ByteBuffer buffer, final int start, final int limit) {
+    int i = spacing(buffer, literal(buffer, start, limit, XML), limit);
+    int q;
+    if (i >= 0 && at(buffer, i, limit) == 'v') {
+      // ("version" '=' Q DIGIT '.' DIGIT Q)?
+      i = character(buffer, spacing(buffer, literal(buffer, i, limit, VERSION), limit), limit, '=');
+      i = spacing(buffer, i, limit);
+      q = (i >= 0) ? at(buffer, i, limit) : EOF;
+      if (i >= 0 && q != '"' && q != '\'') {
+        i = ~i;
+      }
+      if (i >= 0) {
+        i = digit(buffer, spacing(buffer, i + 1, limit), limit);
+      }
+      if (i >= 0) {
+        i = character(buffer, spacing(buffer, i, limit), limit, '.');
+      }
+      if (i >= 0) {
+        i = digit(buffer, spacing(buffer, i, limit), limit);
+      }
+      if (i >= 0) {
+        i = spacing(buffer, character(buffer, spacing(buffer, i, limit), limit, q), limit);
+      }
+    }
+    if (i >= 0) {
+      i = character(buffer, spacing(buffer, literal(buffer, i, limit, ENCODING), limit), limit, '=');
+    }
+    i = spacing(buffer, i, limit);
+    q = (i >= 0) ? at(buffer, i, limit) : EOF;
+    if (i >= 0 && q != '"' && q != '\'') {
+      i = ~i;
+    }
+    int name = -1;
+    if (i >= 0) {
+      name = spacing(buffer, i + 1, limit);
+      i = name;
+    }
+    if (i >= 0) {
+      // IDENTIFIER: LETTER (LETTER|DIGIT|'_'|'.'|'-')*
+      if (isLetter(at(buffer, i, limit))) {
+        i = identifierEnd(buffer, i, limit);
+      } else {
+        i = ~i;
+      }
+    }
+    if (i >= 0) {
+      i = character(buffer, spacing(buffer, i, limit), limit, q);
+    }
+    if (i >= 0) {
+      i = spacing(buffer, i, limit);
+    }
+    return (i >= 0) ? name : i;
+  }
+
+  /**
+   * Extracts the encoding name of a matched xml-encoding declaration.
+   */
+  private static String xmlName(final ByteBuffer buffer, final int start, final int limit) {
+    int end = identifierEnd(buffer, start, limit);
+    char[] name = new char[end - start];
+    for (int i = start; i < end; i++) {
+      name[i - start] = (char) buffer.get(i);
+    }
+    return new String(name);
+  }
+
+  /**
+   * Returns the index behind the identifier that starts at the given index.
+   */
+  private static int identifierEnd(final ByteBuffer buffer, final int start, final int limit) {
+    int i = start + 1;
+    int c;
+    while (isLetterOrDigit(c = at(buffer, i, limit)) || c == '_' || c == '.' || c == '-') {
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * Returns the lower case ASCII character at the given index or
+   * {@link #EOF} if the index is not below the given limit. Bytes outside
+   * the ASCII range are returned as negative values that match nothing.
+   */
+  private static int at(final ByteBuffer buffer, final int index, final int limit) {
+    int result = EOF;
+    if (index < limit) {
+      result = buffer.get(index);
+      if (result >= 'A' && result <= 'Z') {
+        result += 'a' - 'A';
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Skips an optional spacing (<code>' '</code>, <code>'\n'</code> or
+   * <code>"\r\n"</code>) at the given index.
+   * <p>
+   * 
+   * @return the index behind the spacing or the bitwise complement of the
+   *         index of the offending character (a <code>'\r'</code> without
+   *         <code>'\n'</code>). A negative given index is returned unchanged.
+   */
+  private static int spacing(final ByteBuffer buffer, final int index, final int limit) {
+    int result = index;
+    if (index >= 0) {
+      int c = at(buffer, index, limit);
+      if (c == ' ' || c == '\n') {
+        result = index + 1;
+      } else if (c == '\r') {
+        result = (at(buffer, index + 1, limit) == '\n') ? index + 2 : ~(index + 1);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Skips an optional <code>'"'</code> and the optional spacing behind it.
+   * A negative given index is returned unchanged.
+   */
+  private static int quote(final ByteBuffer buffer, final int index, final int limit) {
+    int result = index;
+    if (index >= 0 && at(buffer, index, limit) == '"') {
+      result = spacing(buffer, index + 1, limit);
+    }
+    return result;
+  }
+
+  /**
+   * Matches the given (lower case) character.
+   * <p>
+   * 
+   * @return the index behind the character or the bitwise complement of the
+   *         given index. A negative given index is returned unchanged.
+   */
+  private static int character(final ByteBuffer buffer, final int index, final int limit, final int c) {
+    int result = index;
+    if (index >= 0) {
+      result = (at(buffer, index, limit) == c) ? index + 1 : ~index;
+    }
+    return result;
+  }
+
+  /**
+   * Matches a digit.
+   * <p>
+   * 
+   * @return the index behind the digit or the bitwise complement of the
+   *         given index. A negative given index is returned unchanged.
+   */
+  private static int digit(final ByteBuffer buffer, final int index, final int limit) {
+    int result = index;
+    if (index >= 0) {
+      result = isDigit(at(buffer, index, limit)) ? index + 1 : ~index;
+    }
+    return result;
+  }
+
+  /**
+   * Matches the given (lower case) literal.
+   * <p>
+   * 
+   * @return the index behind the literal or the bitwise complement of the
+   *         index of the first differing character. A negative given index is
+   *         returned unchanged.
+   */
+  private static int literal(final ByteBuffer buffer, final int index, final int limit, final byte[] literal) {
+    int result = index;
+    if (index >= 0) {
+      result = index + literal.length;
+      for (int i = 0; i < literal.length; i++) {
+        if (at(buffer, index + i, limit) != literal[i]) {
+          result = ~(index + i);
+          break;
+        }
+      }
+    }
+    return result;
+  }
+
+  private static boolean isSpacing(final int c) {
+    return c == ' ' || c == '\n' || c == '\r';
+  }
+
+  private static boolean isLetter(final int c) {
+    return c >= 'a' && c <= 'z';
+  }
+
+  private static boolean isDigit(final int c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isLetterOrDigit(final int c) {
+    return isLetter(c) || isDigit(c);
+  }
+
+  /**
+   * Returns the bytes of the given ASCII literal.
+   */
+  private static byte[] ascii(final String literal) {
+    byte[] result = new byte[literal.length()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = (byte) literal.charAt(i);
+    }
+    return result;
+  }
+}
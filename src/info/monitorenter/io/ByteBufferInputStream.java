@@ -0,0 +1,166 @@
+/*
+ * ByteBufferInputStream.java, an InputStream that reads the remaining bytes of 
+ * a ByteBuffer.
+ *
+ * Copyright 2026 (C) Achim Westermann, 
+ * created on Oct 17, 2026 10:41:26 AM.
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ * 
+ * The contents of this collection are subject to the Mozilla Public License Version 
+ * 1.1 (the "License"); you may not use this file except in compliance with 
+ * the License. You may obtain a copy of the License at 
+ * http://www.mozilla.org/MPL/
+ * 
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ * 
+ * The Original Code is the cpDetector code in [sub] packages info.monitorenter and 
+ * cpdetector. 
+ * 
+ * The Initial Developer of the Original Code is
+ * Achim Westermann <achim.westermann@gmx.de>.
+ * 
+ * Portions created by the Initial Developer are Copyright (c) 2007 
+ * the Initial Developer. All Rights Reserved.
+ * 
+ * Contributor(s):
+ * 
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ * 
+ * ***** END LICENSE BLOCK *****
+ *
+ * If you modify or optimize the code in a useful way please let me know.
+ * Achim.Westermann@gmx.de
+ *
+ */
+package info.monitorenter.io;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link InputStream} that reads the remaining bytes of a
+ * {@link ByteBuffer} without copying them into an intermediate array.
+ * <p>
+ * The stream works on a duplicate of the given buffer: Position, limit and
+ * mark of the given buffer are not modified by reading. Mark and reset are
+ * supported with an unlimited read limit.
+ * <p>
+ */
+public class ByteBufferInputStream extends InputStream {
+
+  /** The duplicate of the given buffer that is consumed by reading. */
+  protected ByteBuffer m_buffer;
+
+  /** The marked position in {@link #m_buffer}. */
+  protected int m_mark;
+
+  /**
+   * Construct an instance that reads the remaining bytes of the given buffer.
+   * <p>
+   * 
+   * @param buffer
+   *          the buffer to read, its state is not modified.
+   */
+  public ByteBufferInputStream(final ByteBuffer buffer) {
+    this.m_buffer = buffer.duplicate();
+    this.m_mark = this.m_buffer.position();
+  }
+
+  /**
+   * @see java.io.InputStream#available()
+   */
+  @Override
+  public int available() {
+    return this.m_buffer.remaining();
+  }
+
+  /**
+   * @see java.io.InputStream#mark(int)
+   */
+  @Override
+  public synchronized void mark(final int readlimit) {
+    this.m_mark = this.m_buffer.position();
+  }
+
+  /**
+   * @return true.
+   * 
+   * @see java.io.InputStream#markSupported()
+   */
+  @Override
+  public boolean markSupported() {
+    return true;
+  }
+
+  /**
+   * Read a byte.
+   * <p>
+   * 
+   * @return -1 if the buffer has no remaining bytes.
+   * 
+   * @see java.io.InputStream#read()
+   */
+  @Override
+  public int read() {
+    int result;
+    if (this.m_buffer.hasRemaining()) {
+      result = this.m_buffer.get() & 0xFF;
+    } else {
+      result = -1; // EOF
+    }
+    return result;
+  }
+
+  /**
+   * @see java.io.InputStream#read(byte[], int, int)
+   */
+  @Override
+  public int read(final byte b[], final int off, final int len) {
+    int result;
+    if (len == 0) {
+      result = 0;
+    } else if (!this.m_buffer.hasRemaining()) {
+      result = -1; // EOF
+    } else {
+      result = Math.min(len, this.m_buffer.remaining());
+      this.m_buffer.get(b, off, result);
+    }
+    return result;
+  }
+
+  /**
+   * @see java.io.InputStream#reset()
+   */
+  @Override
+  public synchronized void reset() {
+    this.m_buffer.position(this.m_mark);
+  }
+
+  /**
+   * @see java.io.InputStream#skip(long)
+   */
+  @Override
+  public long skip(final long howManyBytes) {
+    long result = 0;
+    if (howManyBytes > 0) {
+      result = Math.min(howManyBytes, this.m_buffer.remaining());
+      this.m_buffer.position(this.m_buffer.position() + (int) result);
+    }
+    return result;
+  }
+}
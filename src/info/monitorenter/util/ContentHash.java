@@ -0,0 +1,263 @@
+/*
+ * ContentHash.java, a fast non-cryptographic 64 bit hash for file contents.
+ * Copyright (C) 2001 - 2010 Achim Westermann.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *  
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * If you modify or optimize the code in a useful way please let me know.
+ * Achim.Westermann@gmx.de
+ */
+package info.monitorenter.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Incremental implementation of the 64 bit xxHash (XXH64) algorithm.
+ * <p>
+ * The hash is non-cryptographic: It is meant to identify byte-identical
+ * content (e.g. cache keys or duplicates in document collections) at close to
+ * memory bandwidth, not to resist deliberate collisions.
+ * <p>
+ * Instances are not thread-safe. For one-shot hashing use
+ * {@link #hash(ByteBuffer)} or {@link #hash(Path)}.
+ * <p>
+ * 
+ * @author Achim Westermann
+ * 
+ * @version 1.0
+ * 
+ * @see <a href="https://github.com/Cyan4973/xxHash">xxHash</a>
+ */
+public final class ContentHash {
+
+  /** Prime 1 of XXH64. */
+  private static final long PRIME1 = 0x9E3779B185EBCA87L;
+
+  /** Prime 2 of XXH64. */
+  private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+
+  /** Prime 3 of XXH64. */
+  private static final long PRIME3 = 0x165667B19E3779F9L;
+
+  /** Prime 4 of XXH64. */
+  private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+
+  /** Prime 5 of XXH64. */
+  private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+  /** The amount of bytes consumed by one round of the 4 accumulators. */
+  private static final int STRIPE = 32;
+
+  /** The largest region of a file that is mapped at once. */
+  private static final long MAX_REGION = 1L << 30;
+
+  /** The seed of this hash. */
+  private final long m_seed;
+
+  /** Accumulator 1. */
+  private long m_v1;
+
+  /** Accumulator 2. */
+  private long m_v2;
+
+  /** Accumulator 3. */
+  private long m_v3;
+
+  /** Accumulator 4. */
+  private long m_v4;
+
+  /** The total amount of bytes hashed. */
+  private long m_length;
+
+  /** Bytes that did not fill a stripe yet, little-endian. */
+  private final ByteBuffer m_tail = ByteBuffer.allocate(ContentHash.STRIPE).order(
+      ByteOrder.LITTLE_ENDIAN);
+
+  /**
+   * Creates a hash with seed 0.
+   */
+  public ContentHash() {
+    this(0);
+  }
+
+  /**
+   * Creates a hash with the given seed.
+   * <p>
+   * 
+   * @param seed
+   *          the seed of the hash.
+   */
+  public ContentHash(final long seed) {
+    this.m_seed = seed;
+    this.reset();
+  }
+
+  /**
+   * Returns the hash of the remaining bytes of the given buffer.
+   * <p>
+   * 
+   * @param buffer
+   *          the bytes from position to limit are hashed, the buffer is not
+   *          modified.
+   * 
+   * @return the hash of the remaining bytes of the given buffer.
+   */
+  public static long hash(final ByteBuffer buffer) {
+    ContentHash hash = new ContentHash();
+    hash.update(buffer);
+    return hash.getValue();
+  }
+
+  /**
+   * Returns the hash of the content of the given file. The file is mapped
+   * into memory region by region.
+   * <p>
+   * 
+   * @param file
+   *          the file to hash.
+   * 
+   * @return the hash of the content of the given file.
+   * 
+   * @throws IOException
+   *           if the file cannot be read.
+   */
+  public static long hash(final Path file) throws IOException {
+    ContentHash hash = new ContentHash();
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      long size = channel.size();
+      MappedByteBuffer region;
+      for (long position = 0; position < size; position += ContentHash.MAX_REGION) {
+        region = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(
+            ContentHash.MAX_REGION, size - position));
+        hash.update(region);
+      }
+    } finally {
+      channel.close();
+    }
+    return hash.getValue();
+  }
+
+  /**
+   * Resets this hash to the state after construction.
+   */
+  public void reset() {
+    this.m_v1 = this.m_seed + ContentHash.PRIME1 + ContentHash.PRIME2;
+    this.m_v2 = this.m_seed + ContentHash.PRIME2;
+    this.m_v3 = this.m_seed;
+    this.m_v4 = this.m_seed - ContentHash.PRIME1;
+    this.m_length = 0;
+    this.m_tail.clear();
+  }
+
+  /**
+   * Adds the remaining bytes of the given buffer to this hash.
+   * <p>
+   * 
+   * @param buffer
+   *          the bytes from position to limit are hashed, the buffer is not
+   *          modified.
+   */
+  public void update(final ByteBuffer buffer) {
+    ByteBuffer in = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    this.m_length += in.remaining();
+    // complete a pending stripe:
+    if (this.m_tail.position() > 0) {
+      while (this.m_tail.hasRemaining() && in.hasRemaining()) {
+        this.m_tail.put(in.get());
+      }
+      if (this.m_tail.hasRemaining()) {
+        return;
+      }
+      this.stripe(this.m_tail, 0);
+      this.m_tail.clear();
+    }
+    int i = in.position();
+    for (int end = in.limit() - ContentHash.STRIPE; i <= end; i += ContentHash.STRIPE) {
+      this.stripe(in, i);
+    }
+    for (int end = in.limit(); i < end; i++) {
+      this.m_tail.put(in.get(i));
+    }
+  }
+
+  /**
+   * Returns the hash of all bytes added since construction or the last
+   * {@link #reset()}. Does not modify the state of this hash.
+   * <p>
+   * 
+   * @return the hash of all bytes added.
+   */
+  public long getValue() {
+    long h;
+    if (this.m_length >= ContentHash.STRIPE) {
+      h = Long.rotateLeft(this.m_v1, 1) + Long.rotateLeft(this.m_v2, 7)
+          + Long.rotateLeft(this.m_v3, 12) + Long.rotateLeft(this.m_v4, 18);
+      h = ContentHash.merge(h, this.m_v1);
+      h = ContentHash.merge(h, this.m_v2);
+      h = ContentHash.merge(h, this.m_v3);
+      h = ContentHash.merge(h, this.m_v4);
+    } else {
+      h = this.m_seed + ContentHash.PRIME5;
+    }
+    h += this.m_length;
+    int i = 0;
+    int end = this.m_tail.position();
+    for (; i + 8 <= end; i += 8) {
+      h ^= ContentHash.round(0, this.m_tail.getLong(i));
+      h = Long.rotateLeft(h, 27) * ContentHash.PRIME1 + ContentHash.PRIME4;
+    }
+    if (i + 4 <= end) {
+      h ^= (this.m_tail.getInt(i) & 0xFFFFFFFFL) * ContentHash.PRIME1;
+      h = Long.rotateLeft(h, 23) * ContentHash.PRIME2 + ContentHash.PRIME3;
+      i += 4;
+    }
+    for (; i < end; i++) {
+      h ^= (this.m_tail.get(i) & 0xFF) * ContentHash.PRIME5;
+      h = Long.rotateLeft(h, 11) * ContentHash.PRIME1;
+    }
+    h ^= h >>> 33;
+    h *= ContentHash.PRIME2;
+    h ^= h >>> 29;
+    h *= ContentHash.PRIME3;
+    h ^= h >>> 32;
+    return h;
+  }
+
+  /**
+   * Feeds the 32 bytes at the given index of the given little-endian buffer
+   * to the accumulators.
+   */
+  private void stripe(final ByteBuffer in, final int index) {
+    this.m_v1 = ContentHash.round(this.m_v1, in.getLong(index));
+    this.m_v2 = ContentHash.round(this.m_v2, in.getLong(index + 8));
+    this.m_v3 = ContentHash.round(this.m_v3, in.getLong(index + 16));
+    this.m_v4 = ContentHash.round(this.m_v4, in.getLong(index + 24));
+  }
+
+  private static long round(final long acc, final long input) {
+    return Long.rotateLeft(acc + input * ContentHash.PRIME2, 31) * ContentHash.PRIME1;
+  }
+
+  private static long merge(final long acc, final long value) {
+    return (acc ^ ContentHash.round(0, value)) * ContentHash.PRIME1 + ContentHash.PRIME4;
+  }
+}
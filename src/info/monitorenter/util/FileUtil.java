@@ -32,6 +32,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.text.MessageFormat;
 import java.util.Locale;
@@ -55,6 +56,16 @@ public final class FileUtil extends Object {
   /** The singleton instance of this class. */
   private static FileUtil instance;
 
+  /**
+   * Mask for the most significant bit of every byte in a long: A word of 8
+   * bytes contains a non-ASCII byte if <code>word &amp; ASCII_MASK</code> is
+   * not zero.
+   */
+  private static final long ASCII_MASK = 0x8080808080808080L;
+
+  /** The size of the chunks streams are read in for ASCII tests. */
+  private static final int ASCII_CHUNK = 8192;
+
   /**
    * Cuts all path information of the String representation of the given URL.
    * <p>
@@ -307,7 +318,12 @@ public final class FileUtil extends Object {
    *           on a bad day.
    */
   public static boolean isAllASCII(final File f) throws IOException {
-    return FileUtil.isAllASCII(new FileInputStream(f));
+    InputStream in = new FileInputStream(f);
+    try {
+      return FileUtil.isAllASCII(in);
+    } finally {
+      in.close();
+    }
   }
 
   /**
@@ -328,16 +344,105 @@ public final class FileUtil extends Object {
    *           on a bad day.
    */
   public static boolean isAllASCII(final InputStream in) throws IOException {
+    return FileUtil.isAllASCII(in, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Tests wether the first <code>length</code> bytes of the given input
+   * stream only contain ASCII characters.
+   * <p>
+   * The stream is read in chunks that are tested 8 bytes at a time (see
+   * {@link #isAllASCII(byte[], int, int)}). Reading stops at the first chunk
+   * that contains a non-ASCII byte, so up to one chunk more than needed may
+   * be consumed from the stream.
+   * <p>
+   * 
+   * @param in
+   *          the stream to test.
+   * 
+   * @param length
+   *          the maximum amount of bytes to test.
+   * 
+   * @return true if all tested bytes in the given input stream are in the
+   *         ASCII range.
+   * 
+   * @throws IOException
+   *           on a bad day.
+   */
+  public static boolean isAllASCII(final InputStream in, final int length) throws IOException {
     boolean ret = true;
-    int read = -1;
-    do {
-      read = in.read();
-      if (read > 0x7F) {
-        ret = false;
+    byte[] chunk = new byte[Math.max(0, Math.min(FileUtil.ASCII_CHUNK, length))];
+    int remaining = length;
+    int read;
+    while (ret && remaining > 0) {
+      read = in.read(chunk, 0, Math.min(chunk.length, remaining));
+      if (read == -1) {
         break;
       }
+      remaining -= read;
+      ret = FileUtil.isAllASCII(chunk, 0, read);
+    }
+    return ret;
+  }
+
+  /**
+   * Tests wether the given range of the given array only contains ASCII
+   * characters.
+   * <p>
+   * 
+   * @param bytes
+   *          the array to test.
+   * 
+   * @param offset
+   *          the index of the first byte to test.
+   * 
+   * @param length
+   *          the amount of bytes to test.
+   * 
+   * @return true if all bytes in the given range are in the ASCII range.
+   * 
+   * @see #isAllASCII(ByteBuffer)
+   */
+  public static boolean isAllASCII(final byte[] bytes, final int offset, final int length) {
+    return FileUtil.isAllASCII(ByteBuffer.wrap(bytes, offset, length));
+  }
 
-    } while (read != -1);
+  /**
+   * Tests wether the remaining bytes of the given buffer only contain ASCII
+   * characters.
+   * <p>
+   * The bytes are tested 8 at a time: Every long word is masked with
+   * <code>0x8080808080808080L</code> which is non-zero if any of its bytes
+   * has the most significant bit set. Only the trailing bytes that do not
+   * fill a word are tested one by one.
+   * <p>
+   * The buffer is inspected in place: Neither its content nor its position or
+   * limit are modified.
+   * <p>
+   * 
+   * @param buffer
+   *          the bytes from position to limit are tested.
+   * 
+   * @return true if all remaining bytes in the given buffer are in the ASCII
+   *         range.
+   * 
+   * @see #isAllASCII(InputStream)
+   */
+  public static boolean isAllASCII(final ByteBuffer buffer) {
+    boolean ret = true;
+    int i = buffer.position();
+    int end = buffer.limit();
+    for (int wordEnd = end - 7; i < wordEnd; i += 8) {
+      if ((buffer.getLong(i) & FileUtil.ASCII_MASK) != 0) {
+        ret = false;
+        break;
+      }
+    }
+    for (; ret && i < end; i++) {
+      if (buffer.get(i) < 0) {
+        ret = false;
+      }
+    }
     return ret;
   }
 